@@ -32,6 +32,7 @@ import com.cerberustek.server.impl.CerberusServerImpl;
 import com.cerberustek.service.CerberusService;
 import com.cerberustek.service.ServiceNotFoundException;
 import com.cerberustek.service.terminal.TerminalExecutor;
+import com.cerberustek.tcp.SocketProfile;
 import com.cerberustek.worker.WorkerBoss;
 import com.cerberustek.worker.WorkerStatus;
 
@@ -47,6 +48,13 @@ public class CerberusNet implements CerberusService {
     public static String PERMISSION_CLIENT = PERMISSION + ".client";
     public static String PERMISSION_CLIENT_LIST = PERMISSION_CLIENT + ".list";
 
+    public static CerberusServer createServer(ConnectionType type, WorkerBoss boss, int port, int backlog,
+                                              int bufferCap, int connectionTimeout, int poolSize,
+                                              SocketProfile profile) {
+        return getService().registerServer(new CerberusServerImpl(type, boss, port, backlog, bufferCap,
+                connectionTimeout, poolSize, profile));
+    }
+
     public static CerberusServer createServer(ConnectionType type, WorkerBoss boss, int port, int backlog,
                                               int bufferCap, int connectionTimeout, int poolSize) {
         return getService().registerServer(new CerberusServerImpl(type, boss, port, backlog, bufferCap,
@@ -70,6 +78,11 @@ public class CerberusNet implements CerberusService {
         return getService().registerServer(new CerberusServerImpl(type, port));
     }
 
+    public static CerberusClient createClient(ConnectionType type, WorkerBoss boss, String passphrase,
+                                              int bufferCap, SocketProfile profile) {
+        return getService().registerClient(new CerberusClientImpl(type, boss, passphrase, bufferCap, profile));
+    }
+
     public static CerberusClient createClient(ConnectionType type, WorkerBoss boss, String passphrase,
                                               int bufferCap) {
         return getService().registerClient(new CerberusClientImpl(type, boss, passphrase, bufferCap));
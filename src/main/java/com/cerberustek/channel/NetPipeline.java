@@ -27,6 +27,7 @@ import com.cerberustek.ConnectionType;
 
 import java.io.IOException;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 
 public interface NetPipeline {
 
@@ -35,6 +36,13 @@ public interface NetPipeline {
     void write(byte[] data) throws IOException;
     void write(byte[] data, int offset, int length) throws IOException;
 
+    /**
+     * Writes a buffer of frames that already carry their length prefix.
+     * @param frames length prefixed frames
+     * @throws IOException if the frames could not be written
+     */
+    void writeFrames(ByteBuffer frames) throws IOException;
+
     boolean isClosed();
 
     SocketAddress getRemoteAddress();
@@ -27,10 +27,15 @@ import com.cerberustek.channel.impl.InputChannel;
 import com.cerberustek.channel.impl.OutputChannel;
 import com.cerberustek.worker.Startable;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
 public interface NetValve extends Startable {
 
     void updateOutputs();
     void updateInputs(byte[] data, int off, int len);
+    void updateInputs(ByteBuffer data);
     void updateChannels();
 
     short nextChannel();
@@ -43,6 +48,12 @@ public interface NetValve extends Startable {
 
     NetChannel closeChannel(short channelId);
 
+    void onFrame(short channelId, FrameHandler handler);
+    void removeFrameHandler(short channelId, FrameHandler handler);
+
+    void sendFile(short channelId, FileChannel file, long position, long length) throws IOException;
+    void receiveFile(short channelId, FileChannel target, long position, long length);
+
     NetPipeline getPipeline();
     int getNetworkBufferSize();
 }
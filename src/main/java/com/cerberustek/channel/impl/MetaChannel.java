@@ -31,21 +31,17 @@ import com.cerberustek.data.MetaByteBuffer;
 import com.cerberustek.data.MetaData;
 import com.cerberustek.data.MetaOutputStream;
 import com.cerberustek.data.impl.buffer.MetaByteBufferImpl;
-import com.cerberustek.event.Event;
-import com.cerberustek.event.EventHandler;
-import com.cerberustek.event.EventListener;
+import com.cerberustek.channel.FrameHandler;
 import com.cerberustek.channel.NetMetaChannel;
 import com.cerberustek.channel.NetValve;
 import com.cerberustek.events.NetDataReceptionEvent;
-import com.cerberustek.events.NetReceptionEvent;
 import com.cerberustek.exception.NoMatchingDiscriminatorException;
 import com.cerberustek.exception.UnknownDiscriminatorException;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
-@EventHandler(events = {NetReceptionEvent.class})
-public class MetaChannel implements Runnable, NetMetaChannel, EventListener {
+public class MetaChannel implements Runnable, NetMetaChannel, FrameHandler {
 
     protected final DiscriminatorMap map;
     protected final MetaOutputStream outputStream;
@@ -93,7 +89,7 @@ public class MetaChannel implements Runnable, NetMetaChannel, EventListener {
 
     @Override
     public void start() {
-        CerberusRegistry.getInstance().getService(CerberusEvent.class).addListener(this);
+        valve.onFrame(inputChannel.getChannelId(), this);
     }
 
     @Override
@@ -101,7 +97,7 @@ public class MetaChannel implements Runnable, NetMetaChannel, EventListener {
         try {
             inputChannel.getBuffer().notifyAll();
         } catch (IllegalMonitorStateException ignore) {}
-        CerberusRegistry.getInstance().getService(CerberusEvent.class).removeListener(this);
+        valve.removeFrameHandler(inputChannel.getChannelId(), this);
     }
 
     @Override
@@ -134,48 +130,39 @@ public class MetaChannel implements Runnable, NetMetaChannel, EventListener {
 
     @Override
     public void close() throws IOException {
-        CerberusRegistry.getInstance().getService(CerberusEvent.class).removeListener(this);
+        valve.removeFrameHandler(inputChannel.getChannelId(), this);
         flush();
         valve.closeChannel(inputChannel.getChannelId());
     }
 
     @Override
-    public boolean onEvent(Event event) {
-        if (event instanceof NetReceptionEvent) {
-
-            if (((NetReceptionEvent) event).getChannel() != null &&
-                    ((NetReceptionEvent) event).getValve() != null &&
-                    inputChannel != null &&
-                    ((NetReceptionEvent) event).getChannel().getChannelId() == inputChannel.getChannelId() &&
-                    ((NetReceptionEvent) event).getValve().equals(valve)) {
-
-                if (inputChannel.isPackageStart()) {
-                    try {
-                        int length = inputChannel.readInt();
-                        metaBuffer = ByteBuffer.allocate(length);
-
-                        transferData();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                } else if (metaBuffer != null) {
-                    try {
-                        transferData();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
+    public void onFrame(NetValve valve, InputChannel channel) {
+        if (channel != inputChannel)
+            return;
+
+        if (inputChannel.isPackageStart()) {
+            try {
+                int length = inputChannel.readInt();
+                metaBuffer = ByteBuffer.allocate(length);
+
+                transferData();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else if (metaBuffer != null) {
+            try {
+                transferData();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-            return true;
         }
-        return false;
     }
 
     private void transferData() throws IOException {
         int i = Math.min(inputChannel.available(), metaBuffer.remaining());
-        byte[] data = new byte[i];
-        i = inputChannel.read(data);
-        metaBuffer.put(data, 0, i);
+        i = inputChannel.read(metaBuffer.array(), metaBuffer.arrayOffset() + metaBuffer.position(), i);
+        if (i > 0)
+            metaBuffer.position(metaBuffer.position() + i);
 
         if (metaBuffer.remaining() == 0) {
             metaBuffer.flip();
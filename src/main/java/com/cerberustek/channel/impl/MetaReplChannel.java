@@ -33,10 +33,8 @@ import com.cerberustek.data.impl.elements.DocElement;
 import com.cerberustek.data.impl.tags.ArrayTag;
 import com.cerberustek.data.impl.tags.BooleanTag;
 import com.cerberustek.data.impl.tags.IntTag;
-import com.cerberustek.event.EventHandler;
 import com.cerberustek.channel.NetMetaReplChannel;
 import com.cerberustek.channel.NetValve;
-import com.cerberustek.events.NetReceptionEvent;
 import com.cerberustek.events.NetRequestReceptionEvent;
 import com.cerberustek.exception.NoMatchingDiscriminatorException;
 import com.cerberustek.exception.UnknownDiscriminatorException;
@@ -45,9 +43,6 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 
-@EventHandler(events = {
-        NetReceptionEvent.class
-})
 public class MetaReplChannel extends MetaChannel implements NetMetaReplChannel {
 
     private final HashMap<Integer, MetaData[]> replyMap = new HashMap<>();
@@ -33,6 +33,7 @@ import com.cerberustek.events.NetClientConnectionEvent;
 import com.cerberustek.events.NetDisconnectionEvent;
 import com.cerberustek.events.NetFailedConnectionEvent;
 import com.cerberustek.server.NetServer;
+import com.cerberustek.tcp.SocketProfile;
 import com.cerberustek.worker.Worker;
 import com.cerberustek.worker.WorkerBoss;
 import com.cerberustek.worker.WorkerPriority;
@@ -58,6 +59,7 @@ public class CerberusClientImpl implements CerberusClient, EventListener {
     private final ConnectionType connectionType;
     private final String passphrase;
     private final int bufferCap;
+    private final SocketProfile socketProfile;
 
     private ClientHandshakeHandler handshakeHandler;
     private NetClient client;
@@ -70,7 +72,13 @@ public class CerberusClientImpl implements CerberusClient, EventListener {
 
     public CerberusClientImpl(ConnectionType connectionType, WorkerBoss boss, String passphrase,
                               int bufferCap) {
+        this(connectionType, boss, passphrase, bufferCap, new SocketProfile());
+    }
+
+    public CerberusClientImpl(ConnectionType connectionType, WorkerBoss boss, String passphrase,
+                              int bufferCap, SocketProfile socketProfile) {
         this.connectionType = connectionType;
+        this.socketProfile = socketProfile;
         this.boss = boss;
         this.passphrase = passphrase;
         this.bufferCap = bufferCap;
@@ -106,7 +114,7 @@ public class CerberusClientImpl implements CerberusClient, EventListener {
 
         if (connectionType == ConnectionType.TCP) {
             client = new TCPClient(SocketChannel.open(), host, GROUP_CRAWLER,
-                    passphrase, bufferCap, timeOut);
+                    passphrase, bufferCap, timeOut, socketProfile);
         } else {
             DatagramSocket socket = new DatagramSocket();
             client = new UDPClient(socket,
@@ -116,7 +124,6 @@ public class CerberusClientImpl implements CerberusClient, EventListener {
         }
 
         cerberusEvent.addListener(this);
-        cerberusEvent.addListener(handshakeHandler);
 
         handshakeHandler.start(boss, GROUP_HANDSHAKE, WorkerPriority.MEDIUM);
 
@@ -131,7 +138,6 @@ public class CerberusClientImpl implements CerberusClient, EventListener {
             handshakeHandler.stop();
 
             cerberusEvent.removeListener(this);
-            cerberusEvent.removeListener(handshakeHandler);
 
             boss.decomissionGroup(GROUP_MAIN);
             boss.decomissionGroup(GROUP_HANDSHAKE);
@@ -153,7 +159,6 @@ public class CerberusClientImpl implements CerberusClient, EventListener {
 
         CerberusEvent event = CerberusRegistry.getInstance().getService(CerberusEvent.class);
         event.removeListener(this);
-        event.removeListener(handshakeHandler);
 
         handshakeHandler.stop();
         if (client != null)
@@ -25,15 +25,12 @@ package com.cerberustek.client.impl;
 
 import com.cerberustek.CerberusEvent;
 import com.cerberustek.CerberusRegistry;
+import com.cerberustek.channel.FrameHandler;
 import com.cerberustek.channel.NetChannel;
 import com.cerberustek.channel.NetValve;
 import com.cerberustek.channel.impl.InputChannel;
 import com.cerberustek.channel.impl.OutputChannel;
-import com.cerberustek.event.Event;
-import com.cerberustek.event.EventHandler;
-import com.cerberustek.event.EventListener;
 import com.cerberustek.events.NetDisconnectionEvent;
-import com.cerberustek.events.NetReceptionEvent;
 import com.cerberustek.exceptions.ClientTimeoutException;
 import com.cerberustek.worker.Startable;
 import com.cerberustek.worker.WorkerBoss;
@@ -42,8 +39,7 @@ import com.cerberustek.worker.WorkerTask;
 import com.cerberustek.client.CerberusClient;
 import com.cerberustek.client.NetClient;
 
-@EventHandler(events = {NetReceptionEvent.class})
-public class ClientHandshakeHandler implements EventListener, Startable {
+public class ClientHandshakeHandler implements FrameHandler, Startable {
 
     private final CerberusClient client;
     private final short channel;
@@ -51,7 +47,8 @@ public class ClientHandshakeHandler implements EventListener, Startable {
     private WorkerBoss boss;
     private WorkerTask task;
     private String group;
-    private long lastHandshake;
+    private NetValve subscribed;
+    private volatile long lastHandshake;
     private int ping;
 
     public ClientHandshakeHandler(CerberusClient client, short channel) {
@@ -60,16 +57,19 @@ public class ClientHandshakeHandler implements EventListener, Startable {
     }
 
     @Override
-    public boolean onEvent(Event event) {
-        if (event instanceof NetReceptionEvent) {
-            NetReceptionEvent reception = (NetReceptionEvent) event;
+    public void onFrame(NetValve valve, InputChannel input) {
+        // System.out.println("received handshake");
+        lastHandshake = System.currentTimeMillis();
+    }
 
-            if (reception.getChannel().getChannelId() == channel) {
-                // System.out.println("received handshake");
-                lastHandshake = System.currentTimeMillis();
-            }
-        }
-        return true;
+    private void subscribe(NetValve valve) {
+        if (valve == subscribed)
+            return;
+        if (subscribed != null)
+            subscribed.removeFrameHandler(channel, this);
+        if (valve != null)
+            valve.onFrame(channel, this);
+        subscribed = valve;
     }
 
     @Override
@@ -95,6 +95,9 @@ public class ClientHandshakeHandler implements EventListener, Startable {
 
     private void handshake(double time) {
         // System.out.println("starting handshake");
+        NetClient netClient = client.getNetClient();
+        subscribe(netClient != null ? netClient.getValve() : null);
+
         NetChannel c = client.getNetClient()
                 .getValve()
                 .openChannel(channel);
@@ -137,6 +140,7 @@ public class ClientHandshakeHandler implements EventListener, Startable {
     @Override
     public void stop() {
         boss.decomissionTask(task, group);
+        subscribe(null);
     }
 
     @Override
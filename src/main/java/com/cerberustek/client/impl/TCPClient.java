@@ -28,15 +28,21 @@ import com.cerberustek.CerberusRegistry;
 import com.cerberustek.channel.NetValve;
 import com.cerberustek.events.NetClientConnectionEvent;
 import com.cerberustek.events.NetDisconnectionEvent;
+import com.cerberustek.pool.AdaptiveReadSizer;
+import com.cerberustek.pool.BufferLease;
+import com.cerberustek.pool.SlabPool;
 import com.cerberustek.server.NetServer;
 import com.cerberustek.worker.WorkerBoss;
 import com.cerberustek.worker.WorkerPriority;
 import com.cerberustek.worker.WorkerTask;
 import com.cerberustek.client.NetClient;
+import com.cerberustek.tcp.SocketProfile;
 import com.cerberustek.tcp.TCPUtil;
 import com.cerberustek.tcp.TCPPipeline;
 import com.cerberustek.udp.UDPValve;
+import com.cerberustek.valve.NetValveBase;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
@@ -49,6 +55,7 @@ public class TCPClient implements NetClient {
     private final int timeOut;
     private final int bufferCapacity;
     private final Selector selector;
+    private final SlabPool readPool;
 
     private SocketChannel socket;
     private NetValve valve;
@@ -71,14 +78,22 @@ public class TCPClient implements NetClient {
 
     public TCPClient(SocketChannel socket, InetSocketAddress address, String valveGroup, String passphrase,
                      int bufferCapacity, int timeout) throws IOException {
+        this(socket, address, valveGroup, passphrase, bufferCapacity, timeout, new SocketProfile());
+    }
+
+    public TCPClient(SocketChannel socket, InetSocketAddress address, String valveGroup, String passphrase,
+                     int bufferCapacity, int timeout, SocketProfile profile) throws IOException {
         this.valveGroup = valveGroup;
         this.bufferCapacity = bufferCapacity;
         this.timeOut = timeout;
         this.passphrase = passphrase;
         this.socket = socket;
         this.selector = Selector.open();
+        this.readPool = new SlabPool(NetServer.DEFAULT_SLAB_MIN, NetServer.DEFAULT_READ_BUFFERSIZE,
+                NetServer.DEFAULT_READ_POOLSIZE);
 
         socket.configureBlocking(false);
+        profile.apply(socket);
         socket.register(selector, SelectionKey.OP_CONNECT);
         socket.connect(address);
     }
@@ -123,7 +138,9 @@ public class TCPClient implements NetClient {
         this.boss = boss;
         this.group = group;
         this.task = boss.submitTask(this::update, priority, group, -1);
-        valve = new UDPValve(new TCPPipeline(socket), bufferCapacity);
+        TCPPipeline pipeline = new TCPPipeline(socket);
+        valve = new UDPValve(pipeline, bufferCapacity);
+        pipeline.attach(socket.keyFor(selector));
         // valve.start(boss, valveGroup, priority);
     }
 
@@ -171,9 +188,28 @@ public class TCPClient implements NetClient {
         } else if (key.isReadable()) {
 
             SocketChannel channel = (SocketChannel) key.channel();
-            byte[] raw = TCPUtil.read(channel, bufferCapacity);
-            valve.updateInputs(raw, 0, raw.length);
+            if (valve instanceof NetValveBase && ((NetValveBase) valve).transferFrom(channel))
+                return;
+
+            AdaptiveReadSizer sizer = ((TCPPipeline) valve.getPipeline()).getReadSizer();
+            BufferLease lease = readPool.lease(sizer.guess());
+            try {
+                int read = TCPUtil.read(channel, lease.buffer(), sizer);
+                if (read == -1)
+                    throw new EOFException("Connection closed by the server!");
+                if (read > 0) {
+                    if (valve instanceof NetValveBase)
+                        ((NetValveBase) valve).updateInputs(lease);
+                    else
+                        valve.updateInputs(lease.buffer());
+                }
+            } finally {
+                lease.release();
+            }
         }
+
+        if (key.isValid() && key.isWritable() && valve != null)
+            ((TCPPipeline) valve.getPipeline()).flushQueue();
     }
 
     @Override
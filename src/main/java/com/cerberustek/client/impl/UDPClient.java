@@ -25,7 +25,6 @@ package com.cerberustek.client.impl;
 
 import com.cerberustek.CerberusEvent;
 import com.cerberustek.CerberusRegistry;
-import com.cerberustek.channel.NetPipeline;
 import com.cerberustek.channel.NetValve;
 import com.cerberustek.events.NetDisconnectionEvent;
 import com.cerberustek.server.NetServer;
@@ -68,7 +67,7 @@ public class UDPClient implements NetClient {
         this.passphrase = passphrase;
         this.bufferCapacity = bufferCapacity;
         this.valveGroup = valveGroup;
-        this.received = new byte[bufferCapacity + 4];
+        this.received = new byte[NetServer.MAX_DATAGRAM_SIZE];
     }
 
     @Override
@@ -92,7 +91,7 @@ public class UDPClient implements NetClient {
         this.group = group;
         this.task = boss.submitTask(this::update, priority, group, -1);
 
-        NetPipeline pipeline = new UDPPipeline(socket, socket.getLocalSocketAddress(), socket.getRemoteSocketAddress());
+        UDPPipeline pipeline = new UDPPipeline(socket, socket.getLocalSocketAddress(), socket.getRemoteSocketAddress());
         valve = new UDPValve(pipeline, bufferCapacity);
 
         try {
@@ -102,7 +101,7 @@ public class UDPClient implements NetClient {
         }
 
         try {
-            pipeline.write(passphrase.getBytes());
+            pipeline.handshake(passphrase.getBytes());
         } catch (IOException e) {
             CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
                     new NetDisconnectionEvent(valve, e));
@@ -114,12 +113,7 @@ public class UDPClient implements NetClient {
         DatagramPacket packet = new DatagramPacket(received, 0, received.length);
         try {
             socket.receive(packet);
-            int length = (received[0] & 0xFF) +
-                    ((received[1] & 0xFF) << 8) +
-                    ((received[2] & 0xFF) << 16) +
-                    ((received[3] & 0xFF) << 24);
-            // System.out.println("--- "  + length + " bytes!");
-            valve.updateInputs(received, 4, length);
+            valve.updateInputs(received, 0, packet.getLength());
         } catch (IOException e) {
             if (!socket.isClosed())
                 CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
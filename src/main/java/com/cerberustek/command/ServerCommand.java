@@ -30,6 +30,7 @@ import com.cerberustek.usr.PermissionHolder;
 import com.cerberustek.CerberusNet;
 import com.cerberustek.channel.NetValve;
 import com.cerberustek.server.CerberusServer;
+import com.cerberustek.tcp.TCPPipeline;
 import com.cerberustek.worker.WorkerStatus;
 
 import java.net.InetSocketAddress;
@@ -104,6 +105,19 @@ public class ServerCommand implements TerminalCommand {
                                     client.getPipeline().getRemoteAddress() + TerminalUtil.ANSI_RESET +
                                     " ping: " + TerminalUtil.ANSI_PURPLE + target.getPing(client) +
                                     TerminalUtil.ANSI_RESET + "ms!");
+
+                            if (client.getPipeline() instanceof TCPPipeline) {
+                                TCPPipeline pipeline = (TCPPipeline) client.getPipeline();
+                                registry.info(TerminalUtil.ANSI_CYAN + "\t  > " + TerminalUtil.ANSI_RESET +
+                                        "written: " + TerminalUtil.ANSI_PURPLE + pipeline.getBytesWritten() +
+                                        TerminalUtil.ANSI_RESET + " bytes in " + TerminalUtil.ANSI_PURPLE +
+                                        pipeline.getWriteCalls() + TerminalUtil.ANSI_RESET + " write calls");
+                                registry.info(TerminalUtil.ANSI_CYAN + "\t  > " + TerminalUtil.ANSI_RESET +
+                                        "read buffer: " + TerminalUtil.ANSI_PURPLE +
+                                        pipeline.getReadSizer().guess() + TerminalUtil.ANSI_RESET + " bytes (" +
+                                        pipeline.getReadSizer().getMinimum() + " - " +
+                                        pipeline.getReadSizer().getMaximum() + ")");
+                            }
                         }
                         break;
                     case "stop":
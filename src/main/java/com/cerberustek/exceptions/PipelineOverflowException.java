@@ -0,0 +1,48 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.exceptions;
+
+import com.cerberustek.channel.NetPipeline;
+
+import java.io.IOException;
+
+public class PipelineOverflowException extends IOException {
+
+    private final NetPipeline pipeline;
+    private final int queued;
+
+    public PipelineOverflowException(NetPipeline pipeline, int queued) {
+        super("Pipeline to " + pipeline.getRemoteAddress() + " has " + queued + " bytes queued!");
+        this.pipeline = pipeline;
+        this.queued = queued;
+    }
+
+    public NetPipeline getPipeline() {
+        return pipeline;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+}
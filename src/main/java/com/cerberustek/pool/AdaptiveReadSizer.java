@@ -0,0 +1,84 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.pool;
+
+import com.cerberustek.server.NetServer;
+
+/**
+ * Per connection guess for the next read size. Grows after reads that
+ * filled the whole guess and shrinks after two sparse reads in a row.
+ */
+public class AdaptiveReadSizer {
+
+    private static final int GROW_SHIFT = 2;
+
+    private final int minimum;
+    private final int maximum;
+
+    private volatile int current;
+    private boolean decreaseNow = false;
+
+    public AdaptiveReadSizer() {
+        this(NetServer.DEFAULT_READ_BUFFER_MIN, NetServer.DEFAULT_READ_BUFFER_INITIAL,
+                NetServer.DEFAULT_READ_BUFFERSIZE);
+    }
+
+    public AdaptiveReadSizer(int minimum, int initial, int maximum) {
+        this.minimum = Math.max(1, Math.min(minimum, maximum));
+        this.maximum = maximum;
+        this.current = Math.max(this.minimum, Math.min(initial, maximum));
+    }
+
+    public int guess() {
+        return current;
+    }
+
+    public void record(int bytesRead) {
+        if (bytesRead <= 0)
+            return;
+
+        int size = current;
+        if (bytesRead >= size) {
+            current = Math.min(maximum, size << GROW_SHIFT);
+            decreaseNow = false;
+        } else if (bytesRead <= size >> 1) {
+            if (decreaseNow) {
+                current = Math.max(minimum, size >> 1);
+                decreaseNow = false;
+            } else {
+                decreaseNow = true;
+            }
+        } else {
+            decreaseNow = false;
+        }
+    }
+
+    public int getMinimum() {
+        return minimum;
+    }
+
+    public int getMaximum() {
+        return maximum;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.pool;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference counted pooled buffer. Every owner which keeps the lease
+ * beyond the call it was handed in must retain() it and release it once
+ * done. The buffer returns to its pool with the last release and must
+ * not be touched afterwards. Surplus releases are ignored.
+ */
+public class BufferLease {
+
+    private final ByteBufferPool pool;
+    private final ByteBuffer buffer;
+    private final AtomicInteger refs = new AtomicInteger(1);
+    private final Cleaner.Cleanable leak;
+
+    BufferLease(ByteBufferPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.leak = LeakDetector.track(this, refs);
+    }
+
+    public ByteBuffer buffer() {
+        if (refs.get() <= 0)
+            throw new IllegalStateException("Buffer lease has already been released");
+        return buffer;
+    }
+
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    public BufferLease retain() {
+        while (true) {
+            int count = refs.get();
+            if (count <= 0)
+                throw new IllegalStateException("Buffer lease has already been released");
+            if (refs.compareAndSet(count, count + 1))
+                return this;
+        }
+    }
+
+    public int refCount() {
+        return refs.get();
+    }
+
+    public boolean isReleased() {
+        return refs.get() <= 0;
+    }
+
+    public void release() {
+        while (true) {
+            int count = refs.get();
+            if (count <= 0)
+                return;
+            if (refs.compareAndSet(count, count - 1)) {
+                if (count == 1) {
+                    if (leak != null)
+                        leak.clean();
+                    if (pool != null)
+                        pool.release(buffer);
+                }
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.pool;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ByteBufferPool {
+
+    private final ConcurrentLinkedDeque<ByteBuffer> pool = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger available = new AtomicInteger();
+    private final AtomicLong allocations = new AtomicLong();
+    private final int poolSize;
+    private final int bufferSize;
+    private final boolean direct;
+
+    public ByteBufferPool(int poolSize, int bufferSize) {
+        this(poolSize, bufferSize, true);
+    }
+
+    public ByteBufferPool(int poolSize, int bufferSize, boolean direct) {
+        this.poolSize = poolSize;
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = pool.pollFirst();
+        if (buffer == null) {
+            buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+            allocations.incrementAndGet();
+        } else {
+            available.decrementAndGet();
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    public BufferLease lease() {
+        return new BufferLease(this, acquire());
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize || buffer.isDirect() != direct)
+            return;
+
+        if (available.incrementAndGet() <= poolSize)
+            pool.addFirst(buffer);
+        else
+            available.decrementAndGet();
+    }
+
+    public void clear() {
+        ByteBuffer buffer;
+        while ((buffer = pool.pollFirst()) != null)
+            available.decrementAndGet();
+    }
+
+    public int available() {
+        return available.get();
+    }
+
+    public long getAllocations() {
+        return allocations.get();
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.pool;
+
+import com.cerberustek.CerberusRegistry;
+
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reports buffer leases which were garbage collected without being
+ * released. Detection records the stack trace of every lease and is
+ * therefore meant for debugging only. It is disabled by default and
+ * can be enabled with the system property cerberus.net.leakDetection
+ * or with setEnabled().
+ */
+public final class LeakDetector {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final AtomicLong leaks = new AtomicLong();
+    private static volatile boolean enabled = Boolean.getBoolean("cerberus.net.leakDetection");
+
+    private LeakDetector() {}
+
+    static Cleaner.Cleanable track(BufferLease lease, AtomicInteger refs) {
+        if (!enabled)
+            return null;
+        return CLEANER.register(lease, new Trace(refs, lease.capacity()));
+    }
+
+    public static void setEnabled(boolean enabled) {
+        LeakDetector.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static long getLeaks() {
+        return leaks.get();
+    }
+
+    private static class Trace implements Runnable {
+
+        private final AtomicInteger refs;
+        private final Throwable origin;
+
+        private Trace(AtomicInteger refs, int capacity) {
+            this.refs = refs;
+            this.origin = new Throwable("Leased buffer of " + capacity + " bytes");
+        }
+
+        @Override
+        public void run() {
+            if (refs.get() <= 0)
+                return;
+
+            leaks.incrementAndGet();
+            StringBuilder builder = new StringBuilder("Buffer lease was not released before garbage collection! ")
+                    .append(origin.getMessage());
+            for (StackTraceElement element : origin.getStackTrace())
+                builder.append("\n\tat ").append(element);
+            CerberusRegistry.getInstance().warning(builder.toString());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.pool;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A set of buffer pools with power of two size classes between minSize
+ * and maxSize. A lease is served from the smallest class that fits, so
+ * buffers of different sizes can be recycled without wasting a full
+ * sized buffer on every small read. Requests above maxSize are served
+ * with unpooled buffers.
+ */
+public class SlabPool {
+
+    private final ByteBufferPool[] slabs;
+    private final int minShift;
+    private final int maxSize;
+
+    public SlabPool(int minSize, int maxSize, int poolSize) {
+        this(minSize, maxSize, poolSize, false);
+    }
+
+    public SlabPool(int minSize, int maxSize, int poolSize, boolean direct) {
+        if (minSize <= 0 || maxSize < minSize)
+            throw new IllegalArgumentException("Invalid slab sizes: " + minSize + " - " + maxSize);
+
+        this.minShift = 32 - Integer.numberOfLeadingZeros(minSize - 1);
+        int maxShift = 32 - Integer.numberOfLeadingZeros(maxSize - 1);
+        this.maxSize = 1 << maxShift;
+
+        slabs = new ByteBufferPool[maxShift - minShift + 1];
+        for (int i = 0; i < slabs.length; i++)
+            slabs[i] = new ByteBufferPool(poolSize, 1 << (minShift + i), direct);
+    }
+
+    /**
+     * Leases a buffer which can hold at least size bytes. The buffer is
+     * cleared, its capacity may be larger than requested.
+     * @param size required capacity
+     * @return buffer lease with a reference count of one
+     */
+    public BufferLease lease(int size) {
+        int slab = slabOf(size);
+        if (slab >= slabs.length)
+            return new BufferLease(null, ByteBuffer.allocate(size));
+        return slabs[slab].lease();
+    }
+
+    private int slabOf(int size) {
+        if (size <= 1)
+            return 0;
+        return Math.max(0, 32 - Integer.numberOfLeadingZeros(size - 1) - minShift);
+    }
+
+    public void clear() {
+        for (ByteBufferPool slab : slabs)
+            slab.clear();
+    }
+
+    public int available() {
+        int available = 0;
+        for (ByteBufferPool slab : slabs)
+            available += slab.available();
+        return available;
+    }
+
+    public long getAllocations() {
+        long allocations = 0;
+        for (ByteBufferPool slab : slabs)
+            allocations += slab.getAllocations();
+        return allocations;
+    }
+
+    public int getMinSize() {
+        return 1 << minShift;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getSlabCount() {
+        return slabs.length;
+    }
+}
@@ -37,6 +37,39 @@ public interface NetServer extends Startable {
     int DEFAULT_BACKLOG = 50;
     int DEFAULT_HANDSHAKE_INTERVAL = 200;
     int DEFAULT_POOLSIZE = 1;
+    int DEFAULT_READ_POOLSIZE = 16;
+    int DEFAULT_READ_BUFFERSIZE = 64 * 1024;
+    int DEFAULT_READ_BUFFER_MIN = 64;
+    int DEFAULT_READ_BUFFER_INITIAL = 2048;
+    int DEFAULT_SLAB_MIN = 256;
+    int DEFAULT_SLAB_MAX = 64 * 1024;
+    int DEFAULT_SLAB_POOLSIZE = 64;
+    int DEFAULT_RECEIVE_BATCH = 32;
+    int DEFAULT_RECEIVE_QUEUE = 256;
+    int MAX_DATAGRAM_SIZE = 65507;
+    int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    int DEFAULT_UDP_MTU = 1400;
+    int DEFAULT_UDP_REASSEMBLY_TIMEOUT = 3000;
+    int DEFAULT_UDP_REASSEMBLY_MEMORY = 1024 * 1024;
+    int DEFAULT_UDP_WINDOW = 1024;
+    int DEFAULT_UDP_MAX_RETRIES = 10;
+    int DEFAULT_UDP_INITIAL_RTO = 200;
+    int DEFAULT_UDP_MIN_RTO = 20;
+    int DEFAULT_UDP_MAX_RTO = 2000;
+    int DEFAULT_UDP_INITIAL_CWND = 10;
+    int DEFAULT_UDP_MIN_CWND = 2;
+    int DEFAULT_UDP_IDLE_TIMEOUT = 30000;
+    int DEFAULT_UDP_COOKIE_LIFETIME = 5000;
+    int DEFAULT_UDP_FEC_FLUSH = 20;
+    double DEFAULT_DUALSTACK_LOSS_THRESHOLD = 0.05;
+    long DEFAULT_DUALSTACK_PROBE_DELAY = 5000;
+    long DEFAULT_UDP_PEER_MEMORY = 64L * 1024 * 1024;
+    int DEFAULT_TIMER_TICK = 10;
+    int DEFAULT_TIMER_WHEELSIZE = 512;
+    int DEFAULT_WRITE_HIGHWATERMARK = 1024 * 1024;
+    int DEFAULT_CHANNEL_HANDOFF = 1024 * 1024;
+    int DEFAULT_CHANNEL_BATCH = 64;
+    int DEFAULT_WRITE_TIMEOUT = 1000;
 
     SocketAddress getLocalAddress();
 
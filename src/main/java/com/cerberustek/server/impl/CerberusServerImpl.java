@@ -38,10 +38,12 @@ import com.cerberustek.worker.impl.WorkerBossImpl;
 import com.cerberustek.ConnectionType;
 import com.cerberustek.server.CerberusServer;
 import com.cerberustek.server.NetServer;
+import com.cerberustek.tcp.SocketProfile;
+import com.cerberustek.valve.NetValveBase;
 
 import java.io.IOException;
-import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
 import java.nio.channels.ServerSocketChannel;
 
 @EventHandler(events = {NetPostConnectionEvent.class, NetPreConnectionEvent.class, NetConnectionEvent.class,
@@ -53,6 +55,8 @@ public class CerberusServerImpl implements CerberusServer, EventListener {
     public final String GROUP_TIMEOUTS = "server_timeouts" + super.toString();
     public final String GROUP_CONNECTIONS = "server_connections" + super.toString();
     public final String GROUP_HANDSHAKE = "server_handshake" + super.toString();
+    public final String GROUP_REACTOR = "server_reactor" + super.toString();
+    public final String GROUP_CHANNEL = "channel_update" + super.toString();
     public static final short HANDSHAKE_CHANNEL = (short) 1;
 
     private final ConnectionType type;
@@ -62,25 +66,40 @@ public class CerberusServerImpl implements CerberusServer, EventListener {
     private final int connectionTimeOut;
     private final WorkerBoss boss;
     private final ServerHandshakeHandler handshakeHandler;
+    private final SocketProfile socketProfile;
 
     private NetServer server;
     private Worker[] crawler;
     private Worker[] channelUpdate;
     private Worker[] handshaker;
+    private Worker[] reactor;
+    private String[] reactorGroups;
     private Worker mainWorker;
     private Worker timeOutWorker;
     private Worker connectionWorker;
     private int handShakeInterval;
     private int timeout;
+    private int listenerCount = 1;
 
     public CerberusServerImpl(ConnectionType type, WorkerBoss boss, int port, int backlog,
                               int bufferCap, int connectionTimeOut, int poolSize) {
+        this(type, boss, port, backlog, bufferCap, connectionTimeOut, poolSize, new SocketProfile());
+    }
+
+    public CerberusServerImpl(ConnectionType type, WorkerBoss boss, int port, int backlog,
+                              int bufferCap, int connectionTimeOut, int poolSize, SocketProfile socketProfile) {
         this.type = type;
+        this.socketProfile = socketProfile;
         this.handshakeHandler = new ServerHandshakeHandler(HANDSHAKE_CHANNEL, this);
         this.boss = boss;
         this.crawler = new Worker[poolSize];
         this.channelUpdate = new Worker[poolSize];
         this.handshaker = new Worker[poolSize];
+        this.reactor = new Worker[type == ConnectionType.TCP ? poolSize : 0];
+        this.reactorGroups = new String[reactor.length];
+
+        for (int i = 0; i < reactorGroups.length; i++)
+            reactorGroups[i] = GROUP_REACTOR + i;
 
         this.port = port;
         this.backlog = backlog;
@@ -118,10 +137,11 @@ public class CerberusServerImpl implements CerberusServer, EventListener {
 
         if (type == ConnectionType.TCP)
             this.server = new TCPServer(ServerSocketChannel.open(), new InetSocketAddress(port), GROUP_CONNECTIONS,
-                    GROUP_TIMEOUTS, backlog, connectionTimeOut, bufferCap);
+                    GROUP_TIMEOUTS, backlog, connectionTimeOut, bufferCap, NetServer.DEFAULT_READ_POOLSIZE, NetServer.DEFAULT_READ_BUFFERSIZE,
+                    reactorGroups, socketProfile, listenerCount);
         else
-            this.server = new UDPServer(new DatagramSocket(port), GROUP_CONNECTIONS, GROUP_TIMEOUTS,
-                    backlog, connectionTimeOut, bufferCap);
+            this.server = new UDPServer(DatagramChannel.open().bind(new InetSocketAddress(port)), GROUP_CONNECTIONS,
+                    GROUP_TIMEOUTS, backlog, connectionTimeOut, bufferCap, NetServer.DEFAULT_RECEIVE_BATCH);
 
         CerberusEvent cerberusEvent = registry.getService(CerberusEvent.class);
         cerberusEvent.addListener(this);
@@ -131,13 +151,17 @@ public class CerberusServerImpl implements CerberusServer, EventListener {
         boss.createGroup(GROUP_CONNECTIONS, WorkerPriority.MEDIUM);
         boss.createGroup(GROUP_TIMEOUTS, WorkerPriority.MEDIUM);
         boss.createGroup(GROUP_HANDSHAKE, WorkerPriority.MEDIUM);
-        boss.createGroup("channel_update", WorkerPriority.MEDIUM);
+        boss.createGroup(GROUP_CHANNEL, WorkerPriority.MEDIUM);
 
         for (int i = 0; i < crawler.length; i++) {
             crawler[i] = boss.createWorker(WorkerPriority.MEDIUM, GROUP_CRAWL);
-//            channelUpdate[i] = boss.createWorker(WorkerPriority.MEDIUM, "channel_update");
+            channelUpdate[i] = boss.createWorker(WorkerPriority.MEDIUM, GROUP_CHANNEL);
             handshaker[i] = boss.createWorker(WorkerPriority.MEDIUM, GROUP_HANDSHAKE);
         }
+        for (int i = 0; i < reactor.length; i++) {
+            boss.createGroup(reactorGroups[i], WorkerPriority.HIGH);
+            reactor[i] = boss.createWorker(WorkerPriority.MEDIUM, reactorGroups[i]);
+        }
         mainWorker = boss.createWorker(WorkerPriority.MEDIUM, GROUP_MAIN);
         timeOutWorker = boss.createWorker(WorkerPriority.MEDIUM, GROUP_TIMEOUTS);
         connectionWorker = boss.createWorker(WorkerPriority.MEDIUM, GROUP_CONNECTIONS);
@@ -165,12 +189,17 @@ public class CerberusServerImpl implements CerberusServer, EventListener {
             boss.decomissionWorker(worker);
         for (Worker worker : handshaker)
             boss.decomissionWorker(worker);
+        for (Worker worker : reactor)
+            boss.decomissionWorker(worker);
+        for (String group : reactorGroups)
+            boss.decomissionGroup(group);
 
         boss.decomissionGroup(GROUP_CRAWL);
         boss.decomissionGroup(GROUP_MAIN);
         boss.decomissionGroup(GROUP_CONNECTIONS);
         boss.decomissionGroup(GROUP_TIMEOUTS);
         boss.decomissionGroup(GROUP_HANDSHAKE);
+        boss.decomissionGroup(GROUP_CHANNEL);
         server = null;
     }
 
@@ -217,6 +246,18 @@ public class CerberusServerImpl implements CerberusServer, EventListener {
         return type;
     }
 
+    public int getListenerCount() {
+        return listenerCount;
+    }
+
+    public void setListenerCount(int listenerCount) {
+        this.listenerCount = listenerCount;
+    }
+
+    public SocketProfile getSocketProfile() {
+        return socketProfile;
+    }
+
     @Override
     public NetServer getNetServer() {
         return server;
@@ -226,8 +267,11 @@ public class CerberusServerImpl implements CerberusServer, EventListener {
     public boolean onEvent(Event event) {
         if (event instanceof NetPostConnectionEvent) {
             System.out.println("Client connected to server!");
+            NetValve valve = ((NetPostConnectionEvent) event).getValve();
+            if (valve instanceof NetValveBase)
+                ((NetValveBase) valve).setChannelDispatch(boss, GROUP_CHANNEL, WorkerPriority.MEDIUM);
             try {
-                ((NetPostConnectionEvent) event).getValve().start(boss, GROUP_CRAWL, WorkerPriority.MEDIUM);
+                valve.start(boss, GROUP_CRAWL, WorkerPriority.MEDIUM);
             } catch (IOException e) {
                 e.printStackTrace();
             }
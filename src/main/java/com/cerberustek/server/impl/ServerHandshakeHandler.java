@@ -25,6 +25,7 @@ package com.cerberustek.server.impl;
 
 import com.cerberustek.CerberusEvent;
 import com.cerberustek.CerberusRegistry;
+import com.cerberustek.channel.FrameHandler;
 import com.cerberustek.channel.NetChannel;
 import com.cerberustek.channel.NetValve;
 import com.cerberustek.channel.impl.InputChannel;
@@ -39,15 +40,14 @@ import com.cerberustek.worker.WorkerPriority;
 import com.cerberustek.worker.WorkerTask;
 import com.cerberustek.events.NetDisconnectionEvent;
 import com.cerberustek.events.NetPostConnectionEvent;
-import com.cerberustek.events.NetReceptionEvent;
 import com.cerberustek.server.CerberusServer;
 
 import java.io.IOException;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 
-@EventHandler(events = {NetReceptionEvent.class, NetPostConnectionEvent.class, NetDisconnectionEvent.class})
-public class ServerHandshakeHandler implements EventListener, Startable {
+@EventHandler(events = {NetPostConnectionEvent.class, NetDisconnectionEvent.class})
+public class ServerHandshakeHandler implements EventListener, FrameHandler, Startable {
 
     private HashMap<NetValve, Long> timeOuts = new HashMap<>();
     private HashMap<NetValve, Integer> pings = new HashMap<>();
@@ -66,25 +66,26 @@ public class ServerHandshakeHandler implements EventListener, Startable {
 
     @Override
     public boolean onEvent(Event event) {
-        if (event instanceof NetReceptionEvent) {
-            NetReceptionEvent receptionEvent = (NetReceptionEvent) event;
-            if (receptionEvent.getChannel().getChannelId() == channel) {
-                timeOuts.replace(((NetReceptionEvent) event).getValve(), System.currentTimeMillis());
-                // System.out.println("got data from client!");
-
-                /*InputChannel channel = (InputChannel) receptionEvent.getChannel();
-                pings.replace(receptionEvent.getValve(), (int) (System.currentTimeMillis() - channel.readLong()));*/
-            }
-        } else if (event instanceof NetPostConnectionEvent) {
-            timeOuts.put(((NetPostConnectionEvent) event).getValve(), System.currentTimeMillis());
-            pings.put(((NetPostConnectionEvent) event).getValve(), 0);
+        if (event instanceof NetPostConnectionEvent) {
+            NetValve valve = ((NetPostConnectionEvent) event).getValve();
+            timeOuts.put(valve, System.currentTimeMillis());
+            pings.put(valve, 0);
+            valve.onFrame(channel, this);
         } else if (event instanceof NetDisconnectionEvent) {
-            timeOuts.remove(((NetDisconnectionEvent) event).getValve());
-            pings.remove(((NetDisconnectionEvent) event).getValve());
+            NetValve valve = ((NetDisconnectionEvent) event).getValve();
+            timeOuts.remove(valve);
+            pings.remove(valve);
+            valve.removeFrameHandler(channel, this);
         }
         return true;
     }
 
+    @Override
+    public void onFrame(NetValve valve, InputChannel input) {
+        timeOuts.replace(valve, System.currentTimeMillis());
+        // System.out.println("got data from client!");
+    }
+
     @Override
     public void start(WorkerBoss boss, String group, WorkerPriority priority) {
         this.boss = boss;
@@ -0,0 +1,114 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.server.impl;
+
+import com.cerberustek.worker.TimerWheel;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+class TCPAdmission {
+
+    enum State {
+        AWAIT_LENGTH,
+        AWAIT_PASSPHRASE,
+        ADMITTED,
+        FAILED
+    }
+
+    private final SocketChannel channel;
+    private final SocketAddress remoteAddress;
+    private final ByteBuffer header = ByteBuffer.allocate(4);
+    private final int maxLength;
+
+    private State state = State.AWAIT_LENGTH;
+    private ByteBuffer passphrase;
+    private TimerWheel.Timeout timeout;
+
+    TCPAdmission(SocketChannel channel, SocketAddress remoteAddress, int maxLength) {
+        this.channel = channel;
+        this.remoteAddress = remoteAddress;
+        this.maxLength = maxLength;
+    }
+
+    State read() throws IOException {
+        if (state == State.AWAIT_LENGTH) {
+            if (channel.read(header) < 0)
+                throw new IOException("Connection closed during admission!");
+            if (header.hasRemaining())
+                return state;
+
+            header.flip();
+            int length = header.getInt();
+            if (length < 0 || length > maxLength)
+                throw new IOException("Invalid passphrase length: " + length + "!");
+
+            passphrase = ByteBuffer.allocate(length);
+            state = State.AWAIT_PASSPHRASE;
+        }
+
+        if (state == State.AWAIT_PASSPHRASE) {
+            if (passphrase.hasRemaining() && channel.read(passphrase) < 0)
+                throw new IOException("Connection closed during admission!");
+            if (!passphrase.hasRemaining())
+                state = State.ADMITTED;
+        }
+        return state;
+    }
+
+    boolean fail() {
+        if (state == State.ADMITTED || state == State.FAILED)
+            return false;
+
+        state = State.FAILED;
+        return true;
+    }
+
+    String getPassphrase() {
+        return new String(passphrase.array(), 0, passphrase.position());
+    }
+
+    State getState() {
+        return state;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    void setTimeout(TimerWheel.Timeout timeout) {
+        this.timeout = timeout;
+    }
+
+    void cancelTimeout() {
+        if (timeout != null)
+            timeout.cancel();
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.server.impl;
+
+import com.cerberustek.pool.SlabPool;
+import com.cerberustek.server.NetServer;
+import com.cerberustek.worker.TimerWheel;
+import com.cerberustek.worker.Startable;
+import com.cerberustek.worker.WorkerBoss;
+import com.cerberustek.worker.WorkerPriority;
+import com.cerberustek.worker.WorkerTask;
+import com.cerberustek.worker.impl.HashedTimerWheel;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class TCPReactor implements Startable {
+
+    private final ConcurrentLinkedQueue<TCPAdmission> pending = new ConcurrentLinkedQueue<>();
+    private final TCPServer server;
+    private final Selector selector;
+    private final SlabPool readPool;
+    private final TimerWheel timerWheel;
+
+    private volatile int load = 0;
+    private volatile boolean shouldStop = false;
+
+    private String group;
+    private WorkerTask task;
+    private WorkerBoss boss;
+
+    TCPReactor(TCPServer server, int readPoolSize, int readBufferSize) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+        this.readPool = new SlabPool(NetServer.DEFAULT_SLAB_MIN, readBufferSize, readPoolSize);
+        this.timerWheel = new HashedTimerWheel(NetServer.DEFAULT_TIMER_TICK, NetServer.DEFAULT_TIMER_WHEELSIZE);
+    }
+
+    void register(TCPAdmission admission) {
+        pending.add(admission);
+        load++;
+        selector.wakeup();
+    }
+
+    void listen(ServerSocketChannel listener) throws ClosedChannelException {
+        listener.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    int getLoad() {
+        return load;
+    }
+
+    TimerWheel getTimerWheel() {
+        return timerWheel;
+    }
+
+    @Override
+    public void start(WorkerBoss boss, String group, WorkerPriority priority) {
+        this.boss = boss;
+        this.group = group;
+        this.task = boss.submitTask(this::update, priority, group, -1);
+    }
+
+    private void update(double time, int rep) {
+        try {
+            selector.select(timerWheel.nextDelay());
+        } catch (IOException | ClosedSelectorException e) {
+            if (!shouldStop)
+                server.reactorFailed(this, e);
+            return;
+        }
+        registerPending();
+        timerWheel.advance();
+
+        Iterator<SelectionKey> tr = selector.selectedKeys().iterator();
+        while (tr.hasNext()) {
+            SelectionKey key = tr.next();
+            tr.remove();
+
+            try {
+                if (key.isValid() && key.isAcceptable()) {
+                    server.accept(key, this);
+                    continue;
+                }
+                if (key.isValid() && key.isReadable())
+                    server.read(key, readPool);
+                if (key.isValid() && key.isWritable())
+                    server.write(key);
+            } catch (IOException e) {
+                server.disconnect(key, e);
+            } catch (CancelledKeyException e) {
+                server.disconnect(key, new IOException(e));
+            }
+        }
+        load = selector.keys().size() + pending.size();
+    }
+
+    private void registerPending() {
+        TCPAdmission admission;
+        while ((admission = pending.poll()) != null) {
+            try {
+                admission.getChannel().register(selector, SelectionKey.OP_READ, admission);
+            } catch (ClosedChannelException e) {
+                server.abandon(admission);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (!shouldStop) {
+            shouldStop = true;
+            boss.decomissionTask(task, group);
+            pending.clear();
+            timerWheel.clear();
+
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+            readPool.clear();
+        }
+    }
+
+    @Override
+    public String getGroup() {
+        return group;
+    }
+
+    @Override
+    public WorkerBoss getBoss() {
+        return boss;
+    }
+
+    @Override
+    public WorkerTask getTask() {
+        return task;
+    }
+}
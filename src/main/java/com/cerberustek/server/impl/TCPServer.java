@@ -28,29 +28,44 @@ import com.cerberustek.CerberusRegistry;
 import com.cerberustek.channel.NetValve;
 import com.cerberustek.events.*;
 import com.cerberustek.exceptions.ClientDisconnectExcpetion;
+import com.cerberustek.pool.AdaptiveReadSizer;
+import com.cerberustek.pool.BufferLease;
+import com.cerberustek.pool.SlabPool;
 import com.cerberustek.worker.Startable;
+import com.cerberustek.worker.TimerWheel;
 import com.cerberustek.worker.WorkerBoss;
 import com.cerberustek.worker.WorkerPriority;
 import com.cerberustek.worker.WorkerTask;
+import com.cerberustek.worker.impl.HashedTimerWheel;
 import com.cerberustek.server.NetServer;
+import com.cerberustek.server.ReactorBalancing;
+import com.cerberustek.tcp.OverflowPolicy;
+import com.cerberustek.tcp.SocketProfile;
 import com.cerberustek.tcp.TCPUtil;
 import com.cerberustek.tcp.TCPPipeline;
 import com.cerberustek.udp.UDPValve;
+import com.cerberustek.valve.NetValveBase;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
 import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.channels.*;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TCPServer implements NetServer {
 
-    private final HashMap<SocketAddress, NetValve> valves = new HashMap<>();
-    private final HashSet<SocketAddress> banned = new HashSet<>();
+    private final ConcurrentHashMap<SocketAddress, NetValve> valves = new ConcurrentHashMap<>();
+    private final Set<SocketAddress> banned = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<SelectionKey> pausedListeners = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger admissions = new AtomicInteger();
 
     private final ServerSocketChannel socket;
     private final int bufferCapacity;
@@ -59,7 +74,19 @@ public class TCPServer implements NetServer {
     private final String connectionGroup;
     private final String timeOutGroup;
     private final Selector selector;
-
+    private final SlabPool readPool;
+    private final TimerWheel timerWheel;
+    private final TCPReactor[] reactors;
+    private final String[] reactorGroups;
+    private final SocketProfile profile;
+    private final ServerSocketChannel[] listeners;
+
+    private ReactorBalancing balancing = ReactorBalancing.ROUND_ROBIN;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    private int writeHighWaterMark = NetServer.DEFAULT_WRITE_HIGHWATERMARK;
+    private int readBufferMin = NetServer.DEFAULT_READ_BUFFER_MIN;
+    private int readBufferMax;
+    private int nextReactor = 0;
     private String group;
     private WorkerTask task;
     private WorkerBoss boss;
@@ -72,22 +99,80 @@ public class TCPServer implements NetServer {
     public TCPServer(ServerSocketChannel socket, InetSocketAddress address, String connectionGroup, String timeOutGroup)
             throws IOException {
         this(socket, address, connectionGroup, timeOutGroup, NetServer.DEFAULT_BACKLOG, NetServer.DEFAULT_TIMEOUT,
-                DEFAULT_BUFFERCAPACITY);
+                DEFAULT_BUFFERCAPACITY, NetServer.DEFAULT_READ_POOLSIZE, NetServer.DEFAULT_READ_BUFFERSIZE);
     }
 
     public TCPServer(ServerSocketChannel socket, InetSocketAddress address, String connectionGroup, String timeOutGroup,
                      int backlog, int timeOut, int bufferCapacity) throws IOException {
+        this(socket, address, connectionGroup, timeOutGroup, backlog, timeOut, bufferCapacity,
+                NetServer.DEFAULT_READ_POOLSIZE, NetServer.DEFAULT_READ_BUFFERSIZE);
+    }
+
+    public TCPServer(ServerSocketChannel socket, InetSocketAddress address, String connectionGroup, String timeOutGroup,
+                     int backlog, int timeOut, int bufferCapacity, int readPoolSize, int readBufferSize)
+            throws IOException {
+        this(socket, address, connectionGroup, timeOutGroup, backlog, timeOut, bufferCapacity, readPoolSize,
+                readBufferSize, new String[0]);
+    }
+
+    public TCPServer(ServerSocketChannel socket, InetSocketAddress address, String connectionGroup, String timeOutGroup,
+                     int backlog, int timeOut, int bufferCapacity, int readPoolSize, int readBufferSize,
+                     String[] reactorGroups) throws IOException {
+        this(socket, address, connectionGroup, timeOutGroup, backlog, timeOut, bufferCapacity, readPoolSize,
+                readBufferSize, reactorGroups, new SocketProfile());
+    }
+
+    public TCPServer(ServerSocketChannel socket, InetSocketAddress address, String connectionGroup, String timeOutGroup,
+                     int backlog, int timeOut, int bufferCapacity, int readPoolSize, int readBufferSize,
+                     String[] reactorGroups, SocketProfile profile) throws IOException {
+        this(socket, address, connectionGroup, timeOutGroup, backlog, timeOut, bufferCapacity, readPoolSize,
+                readBufferSize, reactorGroups, profile, 1);
+    }
+
+    public TCPServer(ServerSocketChannel socket, InetSocketAddress address, String connectionGroup, String timeOutGroup,
+                     int backlog, int timeOut, int bufferCapacity, int readPoolSize, int readBufferSize,
+                     String[] reactorGroups, SocketProfile profile, int listenerCount) throws IOException {
         this.socket = socket;
+        this.profile = profile;
+        this.readBufferMax = readBufferSize;
         this.connectionGroup = connectionGroup;
         this.timeOutGroup = timeOutGroup;
         this.backlog = backlog;
         this.timeOut = timeOut;
         this.bufferCapacity = bufferCapacity;
         this.selector = Selector.open();
+        this.readPool = new SlabPool(NetServer.DEFAULT_SLAB_MIN, readBufferSize, readPoolSize);
+        this.timerWheel = new HashedTimerWheel(NetServer.DEFAULT_TIMER_TICK, NetServer.DEFAULT_TIMER_WHEELSIZE);
+        this.reactorGroups = reactorGroups;
+        this.reactors = new TCPReactor[reactorGroups.length];
+
+        for (int i = 0; i < reactors.length; i++)
+            reactors[i] = new TCPReactor(this, readPoolSize, readBufferSize);
+
+        this.listeners = new ServerSocketChannel[Math.max(listenerCount, 1)];
+        listeners[0] = socket;
+        for (int i = 1; i < listeners.length; i++)
+            listeners[i] = ServerSocketChannel.open();
+
+        for (int i = 0; i < listeners.length; i++) {
+            ServerSocketChannel listener = listeners[i];
+            listener.configureBlocking(false);
+            profile.applyListener(listener);
+            if (listeners.length > 1) {
+                if (!listener.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                    for (ServerSocketChannel channel : listeners)
+                        channel.close();
+                    throw new IOException("SO_REUSEPORT is not supported on this platform");
+                }
+                listener.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            listener.socket().bind(address);
 
-        socket.configureBlocking(false);
-        socket.socket().bind(address);
-        socket.register(selector, SelectionKey.OP_ACCEPT);
+            if (listeners.length > 1 && reactors.length > 0)
+                reactors[i % reactors.length].listen(listener);
+            else
+                listener.register(selector, SelectionKey.OP_ACCEPT);
+        }
     }
 
     @Override
@@ -97,16 +182,20 @@ public class TCPServer implements NetServer {
 
     @Override
     public void timeOutValve(SocketAddress remoteAddress) {
+        if (remoteAddress == null)
+            return;
+
         NetValve valve = getValve(remoteAddress);
         if (valve != null) {
             valve.stop();
             valves.remove(remoteAddress);
+            freeSlot();
         }
     }
 
     @Override
     public NetValve getValve(SocketAddress remoteAddress) {
-        return valves.get(remoteAddress);
+        return remoteAddress != null ? valves.get(remoteAddress) : null;
     }
 
     @Override
@@ -143,25 +232,84 @@ public class TCPServer implements NetServer {
         boss.submitTask((t) -> pardon(remoteAddress), timeOutGroup, delay);
     }
 
+    public SocketProfile getSocketProfile() {
+        return profile;
+    }
+
+    public ReactorBalancing getBalancing() {
+        return balancing;
+    }
+
+    public void setBalancing(ReactorBalancing balancing) {
+        this.balancing = balancing;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public int getWriteHighWaterMark() {
+        return writeHighWaterMark;
+    }
+
+    public void setWriteHighWaterMark(int writeHighWaterMark) {
+        this.writeHighWaterMark = writeHighWaterMark;
+    }
+
+    public int getReadBufferMin() {
+        return readBufferMin;
+    }
+
+    public int getReadBufferMax() {
+        return readBufferMax;
+    }
+
+    public void setReadBufferBounds(int min, int max) {
+        this.readBufferMin = min;
+        this.readBufferMax = Math.min(max, readPool.getMaxSize());
+    }
+
+    public int getListenerCount() {
+        return listeners.length;
+    }
+
+    public int getReactorCount() {
+        return reactors.length;
+    }
+
     @Override
     public void start(WorkerBoss boss, String group, WorkerPriority priority) {
         this.boss = boss;
         this.group = group;
         this.task = boss.submitTask(this::update, priority, group, -1);
+
+        for (int i = 0; i < reactors.length; i++)
+            reactors[i].start(boss, reactorGroups[i], priority);
     }
 
     @SuppressWarnings("Duplicates")
     private void update(double time, int rep) {
         try {
-            this.selector.select();
+            this.selector.select(timerWheel.nextDelay());
+            timerWheel.advance();
             Iterator<SelectionKey> tr = selector.selectedKeys().iterator();
 
             while (tr.hasNext()) {
                 SelectionKey key = tr.next();
                 tr.remove();
 
-                if (key.isValid())
-                    process(key);
+                try {
+                    if (key.isValid())
+                        process(key);
+                } catch (IOException e) {
+                    disconnect(key, e);
+                } catch (CancelledKeyException e) {
+                    disconnect(key, new IOException(e));
+                }
             }
         } catch (Exception e) {
             if (shouldStop) {
@@ -172,100 +320,309 @@ public class TCPServer implements NetServer {
         }
     }
 
-    private void process(SelectionKey key) throws IOException, InterruptedException {
-        if (key.isAcceptable() && valves.size() < backlog) {
-            accept();
-        } else if (key.isReadable()) {
-            SocketAddress address = ((SocketChannel) key.channel()).getRemoteAddress();
+    private void process(SelectionKey key) throws IOException {
+        if (key.isAcceptable()) {
+            accept(key, null);
+        } else {
+            if (key.isReadable())
+                read(key, readPool);
+            if (key.isValid() && key.isWritable())
+                write(key);
+        }
+    }
 
-            if (!banned.contains(address)) {
-                NetValve valve = valves.get(address);
+    void write(SelectionKey key) throws IOException {
+        Object attachment = key.attachment();
+        if (attachment instanceof NetValve && ((NetValve) attachment).getPipeline() instanceof TCPPipeline)
+            ((TCPPipeline) ((NetValve) attachment).getPipeline()).flushQueue();
+    }
 
-                if (valve != null) {
-                    SocketChannel channel = (SocketChannel) key.channel();
+    void read(SelectionKey key, SlabPool readPool) throws IOException {
+        Object attachment = key.attachment();
+        if (attachment instanceof TCPAdmission) {
+            admit(key, (TCPAdmission) attachment);
+            return;
+        } else if (!(attachment instanceof NetValve)) {
+            return;
+        }
+
+        NetValve valve = (NetValve) attachment;
+        SocketAddress address = valve.getPipeline().getRemoteAddress();
+
+        if (address != null && !banned.contains(address)) {
+            SocketChannel channel = (SocketChannel) key.channel();
+            if (valve instanceof NetValveBase && ((NetValveBase) valve).transferFrom(channel))
+                return;
+
+            AdaptiveReadSizer sizer = valve.getPipeline() instanceof TCPPipeline ?
+                    ((TCPPipeline) valve.getPipeline()).getReadSizer() : null;
+            BufferLease lease = readPool.lease(sizer != null ? sizer.guess() : readBufferMax);
+            try {
+                ByteBuffer buffer = lease.buffer();
+                int read = sizer != null ? TCPUtil.read(channel, buffer, sizer) :
+                        TCPUtil.read(channel, buffer, readBufferMax);
+                if (read == -1) {
+                    disconnect(key, new ClientDisconnectExcpetion(valve));
+                } else if (read > 0) {
                     try {
-                        byte[] raw = TCPUtil.read(channel, bufferCapacity);
-                        try {
-                            valve.updateInputs(raw, 0, raw.length);
-                        } catch (ArrayIndexOutOfBoundsException e) {
-                            CerberusRegistry.getInstance().getService(CerberusEvent.class)
-                                    .executeFullEIF(new NetDisconnectionEvent(valve, new ClientDisconnectExcpetion(valve)));
+                        if (valve instanceof NetValveBase) {
+                            ((NetValveBase) valve).updateInputs(lease);
+                            if (((NetValveBase) valve).isThrottled())
+                                throttle(key, (NetValveBase) valve);
+                        } else {
+                            valve.updateInputs(buffer);
                         }
-                    } catch (BufferOverflowException e) {
-                        e.printStackTrace();
-                    }
-                } else {
-                    SocketChannel channel = (SocketChannel) key.channel();
-                    //noinspection SynchronizationOnLocalVariableOrMethodParameter
-                    synchronized (channel) {
-                        channel.notifyAll();
-                        channel.wait();
+                    } catch (ArrayIndexOutOfBoundsException e) {
+                        disconnect(key, new ClientDisconnectExcpetion(valve));
                     }
                 }
+            } catch (BufferOverflowException e) {
+                e.printStackTrace();
+            } finally {
+                lease.release();
             }
         }
     }
 
-    private void accept() {
-        try {
-            final SocketChannel clientChannel = socket.accept();
-            final SocketAddress remoteAddress = clientChannel.getRemoteAddress();
+    /**
+     * Tears down the connection behind a key after a read or write failed
+     * or the peer closed it. Closes the channel, drops and stops the valve
+     * and fires a NetDisconnectionEvent. Pending admissions just fail.
+     * @param key key of the connection
+     * @param cause why the connection ended
+     */
+    void disconnect(SelectionKey key, IOException cause) {
+        key.cancel();
+        Object attachment = key.attachment();
+        if (attachment instanceof TCPAdmission) {
+            TCPAdmission admission = (TCPAdmission) attachment;
+            if (admission.fail()) {
+                admission.cancelTimeout();
+                settle();
+                CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
+                        new NetFailedConnectionEvent(admission.getRemoteAddress(), cause));
+            }
+            closeQuietly(admission.getChannel());
+        } else if (attachment instanceof NetValve) {
+            NetValve valve = (NetValve) attachment;
+            SocketAddress address = valve.getPipeline().getRemoteAddress();
+            closeQuietly((SocketChannel) key.channel());
+            if (address != null && valves.remove(address, valve)) {
+                freeSlot();
+                valve.stop();
+                CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
+                        new NetDisconnectionEvent(valve, cause));
+            }
+        } else if (key.channel() instanceof SocketChannel) {
+            closeQuietly((SocketChannel) key.channel());
+        }
+    }
 
-            if (!banned.contains(remoteAddress)) {
-                clientChannel.configureBlocking(false);
-                clientChannel.register(this.selector, SelectionKey.OP_READ);
+    private void throttle(SelectionKey key, NetValveBase valve) {
+        // Stop reading until the channel workers caught up with the handoff
+        // queue, the peer's TCP window does the rest.
+        key.interestOpsAnd(~SelectionKey.OP_READ);
+        valve.onResume(() -> {
+            try {
+                key.interestOpsOr(SelectionKey.OP_READ);
+                key.selector().wakeup();
+            } catch (CancelledKeyException ignored) {
+            }
+        });
+    }
 
-                final WorkerTask t1 = boss.submitTask((d) -> {
-                    try {
-                        if (CerberusRegistry.getInstance().getService(CerberusEvent.class).executeShortEIF(
-                                new NetPreConnectionEvent(remoteAddress))) {
-
-                            synchronized (clientChannel) {
-                                clientChannel.wait(timeOut);
-                            }
-                            byte[] raw = TCPUtil.read(clientChannel, bufferCapacity);
-                            if (raw.length == 0)
-                                throw new IOException("Took to long to connect!");
-                            String passphrase = new String(raw);
-
-                            if (CerberusRegistry.getInstance().getService(CerberusEvent.class).executeShortEIF(
-                                    new NetConnectionEvent(remoteAddress,
-                                            clientChannel.getLocalAddress(), passphrase))) {
-
-                                NetValve valve = new UDPValve(new TCPPipeline(
-                                        clientChannel), bufferCapacity);
-                                valves.put(remoteAddress, valve);
-                                CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
-                                        new NetPostConnectionEvent(valve));
-                            }
-                        }
-                    } catch (IOException | InterruptedException | ClosedSelectorException e) {
-                        CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
-                                new NetFailedConnectionEvent(remoteAddress, e));
-                        try {
-                            clientChannel.close();
-                            NetValve valve = valves.get(remoteAddress);
-                            if (valve != null)
-                                valve.stop();
-                            valves.remove(remoteAddress);
-                        } catch (IOException e1) {
-                            // Ignore
-                        }
-                    } finally {
-                        synchronized (clientChannel) {
-                            clientChannel.notifyAll();
-                        }
-                    }
-                }, WorkerPriority.LOW, connectionGroup);
+    /**
+     * @return connections plus pending admissions
+     */
+    public int getOccupied() {
+        return valves.size() + admissions.get();
+    }
+
+    /**
+     * Stops accepting on a listener while the backlog is used up by open
+     * connections and pending admissions. freeSlot() resumes it.
+     * @param key listener key
+     */
+    private void pauseAccept(SelectionKey key) {
+        key.interestOpsAnd(~SelectionKey.OP_ACCEPT);
+        pausedListeners.add(key);
+        // A slot may have been freed in between
+        if (getOccupied() < backlog)
+            freeSlot();
+    }
 
-                boss.submitTask((d) -> boss.decomissionTask(t1, connectionGroup), WorkerPriority.MEDIUM, timeOutGroup,
-                        timeOut);
+    private void freeSlot() {
+        SelectionKey key;
+        while (getOccupied() < backlog && (key = pausedListeners.poll()) != null) {
+            try {
+                key.interestOpsOr(SelectionKey.OP_ACCEPT);
+                key.selector().wakeup();
+            } catch (CancelledKeyException ignored) {
             }
+        }
+    }
+
+    private void settle() {
+        admissions.decrementAndGet();
+        freeSlot();
+    }
+
+    /**
+     * Fails an admission that could not be registered with its reactor.
+     * @param admission admission to drop
+     */
+    void abandon(TCPAdmission admission) {
+        if (admission.fail()) {
+            admission.cancelTimeout();
+            settle();
+        }
+        closeQuietly(admission.getChannel());
+    }
+
+    void accept(SelectionKey key, TCPReactor owner) {
+        if (getOccupied() >= backlog) {
+            pauseAccept(key);
+            return;
+        }
+
+        ServerSocketChannel listener = (ServerSocketChannel) key.channel();
+        final SocketChannel clientChannel;
+        try {
+            clientChannel = listener.accept();
         } catch (IOException e) {
             if (!shouldStop)
                 CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
                         new NetServerCloseEvent(this, e));
             stop();
+            return;
+        }
+
+        if (clientChannel == null)
+            return;
+
+        SocketAddress remoteAddress = null;
+        TCPAdmission admission = null;
+        try {
+            remoteAddress = clientChannel.getRemoteAddress();
+
+            if (banned.contains(remoteAddress) || !CerberusRegistry.getInstance().getService(CerberusEvent.class)
+                    .executeShortEIF(new NetPreConnectionEvent(remoteAddress))) {
+                clientChannel.close();
+                return;
+            }
+
+            clientChannel.configureBlocking(false);
+            profile.apply(clientChannel);
+            final TCPAdmission pending = admission = new TCPAdmission(clientChannel, remoteAddress, bufferCapacity);
+            admissions.incrementAndGet();
+
+            if (reactors.length > 0) {
+                TCPReactor reactor = owner != null ? owner : nextReactor();
+                admission.setTimeout(reactor.getTimerWheel().schedule(() -> expire(pending), timeOut));
+                reactor.register(admission);
+            } else {
+                admission.setTimeout(timerWheel.schedule(() -> expire(pending), timeOut));
+                clientChannel.register(this.selector, SelectionKey.OP_READ, admission);
+            }
+        } catch (IOException e) {
+            CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
+                    new NetFailedConnectionEvent(remoteAddress, e));
+            if (admission != null)
+                abandon(admission);
+            closeQuietly(clientChannel);
+        }
+    }
+
+    private void admit(SelectionKey key, TCPAdmission admission) {
+        try {
+            if (admission.read() != TCPAdmission.State.ADMITTED)
+                return;
+        } catch (IOException e) {
+            if (admission.fail()) {
+                admission.cancelTimeout();
+                settle();
+                CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
+                        new NetFailedConnectionEvent(admission.getRemoteAddress(), e));
+                closeQuietly(admission.getChannel());
+            }
+            return;
+        }
+        admission.cancelTimeout();
+
+        SocketChannel clientChannel = admission.getChannel();
+        SocketAddress remoteAddress = admission.getRemoteAddress();
+        NetValve valve = null;
+        try {
+            if (CerberusRegistry.getInstance().getService(CerberusEvent.class).executeShortEIF(
+                    new NetConnectionEvent(remoteAddress, clientChannel.getLocalAddress(),
+                            admission.getPassphrase()))) {
+
+                TCPPipeline pipeline = new TCPPipeline(clientChannel);
+                pipeline.setHighWaterMark(writeHighWaterMark);
+                pipeline.setOverflowPolicy(overflowPolicy);
+                pipeline.setReadSizer(new AdaptiveReadSizer(readBufferMin, NetServer.DEFAULT_READ_BUFFER_INITIAL,
+                        readBufferMax));
+
+                valve = new UDPValve(pipeline, bufferCapacity);
+                valves.put(remoteAddress, valve);
+                admissions.decrementAndGet();
+                key.attach(valve);
+                pipeline.attach(key);
+                CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
+                        new NetPostConnectionEvent(valve));
+            } else {
+                settle();
+                closeQuietly(clientChannel);
+            }
+        } catch (IOException e) {
+            if (valve == null)
+                settle();
+            else if (valves.remove(remoteAddress, valve))
+                freeSlot();
+            CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
+                    new NetFailedConnectionEvent(remoteAddress, e));
+            closeQuietly(clientChannel);
+        }
+    }
+
+    private void expire(TCPAdmission admission) {
+        if (admission.fail()) {
+            settle();
+            CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
+                    new NetFailedConnectionEvent(admission.getRemoteAddress(),
+                            new IOException("Took to long to connect!")));
+            closeQuietly(admission.getChannel());
+        }
+    }
+
+    private void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    private TCPReactor nextReactor() {
+        if (balancing == ReactorBalancing.LEAST_LOADED) {
+            TCPReactor reactor = reactors[0];
+            for (int i = 1; i < reactors.length; i++) {
+                if (reactors[i].getLoad() < reactor.getLoad())
+                    reactor = reactors[i];
+            }
+            return reactor;
+        }
+
+        TCPReactor reactor = reactors[nextReactor];
+        nextReactor = (nextReactor + 1) % reactors.length;
+        return reactor;
+    }
+
+    void reactorFailed(TCPReactor reactor, Exception e) {
+        if (!shouldStop) {
+            CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
+                    new NetServerCloseEvent(this, e));
+            stop();
         }
     }
 
@@ -273,12 +630,17 @@ public class TCPServer implements NetServer {
     public void stop() {
         if (!shouldStop) {
             boss.decomissionTask(task, group);
+            for (TCPReactor reactor : reactors)
+                reactor.stop();
             valves.values().forEach(Startable::stop);
             valves.clear();
 
             try {
                 selector.close();
-                socket.close();
+                for (ServerSocketChannel listener : listeners)
+                    listener.close();
+                readPool.clear();
+                timerWheel.clear();
             } catch (IOException e) {
                 // Ignore
             }
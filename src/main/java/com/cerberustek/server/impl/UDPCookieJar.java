@@ -0,0 +1,118 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.server.impl;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Stateless handshake cookies for UDP. A cookie is a truncated HMAC of
+ * the peer address and the current time slot, so it can be verified
+ * without keeping any state for peers that never echo it back. Cookies
+ * stay valid for the current and the previous slot. Not thread safe.
+ */
+class UDPCookieJar {
+
+    private final Mac mac;
+    private final long lifetime;
+    private final byte[] digest;
+    private final byte[] expected;
+
+    UDPCookieJar(int cookieLength, long lifetime) {
+        this.lifetime = Math.max(1, lifetime);
+        this.expected = new byte[cookieLength];
+
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        try {
+            mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+        this.digest = new byte[mac.getMacLength()];
+    }
+
+    void bake(SocketAddress remoteAddress, ByteBuffer target) {
+        bake(remoteAddress, target, System.currentTimeMillis());
+    }
+
+    void bake(SocketAddress remoteAddress, ByteBuffer target, long now) {
+        compute(remoteAddress, slot(now));
+        target.put(digest, 0, expected.length);
+    }
+
+    boolean verify(SocketAddress remoteAddress, ByteBuffer cookie) {
+        return verify(remoteAddress, cookie, System.currentTimeMillis());
+    }
+
+    boolean verify(SocketAddress remoteAddress, ByteBuffer cookie, long now) {
+        if (cookie.remaining() < expected.length)
+            return false;
+
+        byte[] received = new byte[expected.length];
+        cookie.get(received);
+
+        long slot = slot(now);
+        for (long s = slot; s >= slot - 1; s--) {
+            compute(remoteAddress, s);
+            System.arraycopy(digest, 0, expected, 0, expected.length);
+            if (MessageDigest.isEqual(expected, received))
+                return true;
+        }
+        return false;
+    }
+
+    private long slot(long time) {
+        return time / lifetime;
+    }
+
+    private void compute(SocketAddress remoteAddress, long slot) {
+        if (remoteAddress instanceof InetSocketAddress) {
+            InetSocketAddress address = (InetSocketAddress) remoteAddress;
+            if (address.getAddress() != null)
+                mac.update(address.getAddress().getAddress());
+            int port = address.getPort();
+            mac.update((byte) (port >>> 8));
+            mac.update((byte) port);
+        } else {
+            mac.update(String.valueOf(remoteAddress).getBytes());
+        }
+
+        for (int i = 56; i >= 0; i -= 8)
+            mac.update((byte) (slot >>> i));
+
+        try {
+            mac.doFinal(digest, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
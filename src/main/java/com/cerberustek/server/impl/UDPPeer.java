@@ -0,0 +1,110 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.server.impl;
+
+import com.cerberustek.channel.NetValve;
+import com.cerberustek.valve.NetValveBase;
+import com.cerberustek.worker.TimerWheel;
+
+import java.net.SocketAddress;
+
+class UDPPeer {
+
+    private final NetValve valve;
+    private final SocketAddress remoteAddress;
+    private final long footprint;
+
+    private volatile long lastSeen;
+    private TimerWheel.Timeout timeout;
+
+    // Guarded by the UDPPeerList the peer is in
+    UDPPeer older;
+    UDPPeer newer;
+    boolean linked = false;
+    private long charged = 0;
+    private long chargedAt = 0;
+
+    UDPPeer(NetValve valve, SocketAddress remoteAddress, long footprint, long now) {
+        this.valve = valve;
+        this.remoteAddress = remoteAddress;
+        this.footprint = footprint;
+        this.lastSeen = now;
+    }
+
+    void touch(long now) {
+        lastSeen = now;
+    }
+
+    long idle(long now) {
+        return now - lastSeen;
+    }
+
+    long getLastSeen() {
+        return lastSeen;
+    }
+
+    NetValve getValve() {
+        return valve;
+    }
+
+    SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    long getFootprint() {
+        if (valve instanceof NetValveBase)
+            return ((NetValveBase) valve).getMemoryFootprint();
+        return footprint;
+    }
+
+    /**
+     * Samples the footprint again.
+     * @param now current time in milliseconds
+     * @return change since the last sample
+     */
+    long recharge(long now) {
+        long current = getFootprint();
+        long delta = current - charged;
+        charged = current;
+        chargedAt = now;
+        return delta;
+    }
+
+    long getCharged() {
+        return charged;
+    }
+
+    long getChargedAt() {
+        return chargedAt;
+    }
+
+    synchronized void setTimeout(TimerWheel.Timeout timeout) {
+        this.timeout = timeout;
+    }
+
+    synchronized void cancelTimeout() {
+        if (timeout != null)
+            timeout.cancel();
+    }
+}
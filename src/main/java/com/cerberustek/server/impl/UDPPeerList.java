@@ -0,0 +1,113 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.server.impl;
+
+/**
+ * Keeps the peers of a UDP server in the order they were last heard
+ * from, together with a running total of their memory footprints. The
+ * footprint of a peer is sampled when it is added and refreshed at most
+ * once per second while it receives.
+ */
+class UDPPeerList {
+
+    private static final long CHARGE_INTERVAL = 1000;
+
+    private UDPPeer eldest;
+    private UDPPeer youngest;
+    private int size = 0;
+    private long memory = 0;
+
+    synchronized void add(UDPPeer peer, long now) {
+        if (peer.linked)
+            return;
+
+        link(peer);
+        size++;
+        memory += peer.recharge(now);
+    }
+
+    synchronized void touch(UDPPeer peer, long now) {
+        if (!peer.linked)
+            return;
+
+        if (peer != youngest) {
+            unlink(peer);
+            link(peer);
+        }
+        if (now - peer.getChargedAt() >= CHARGE_INTERVAL)
+            memory += peer.recharge(now);
+    }
+
+    synchronized boolean remove(UDPPeer peer) {
+        if (!peer.linked)
+            return false;
+
+        unlink(peer);
+        size--;
+        memory -= peer.getCharged();
+        return true;
+    }
+
+    synchronized UDPPeer eldest() {
+        return eldest;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized long getMemory() {
+        return memory;
+    }
+
+    synchronized void clear() {
+        while (eldest != null)
+            remove(eldest);
+    }
+
+    private void link(UDPPeer peer) {
+        peer.older = youngest;
+        peer.newer = null;
+        if (youngest != null)
+            youngest.newer = peer;
+        else
+            eldest = peer;
+        youngest = peer;
+        peer.linked = true;
+    }
+
+    private void unlink(UDPPeer peer) {
+        if (peer.older != null)
+            peer.older.newer = peer.newer;
+        else
+            eldest = peer.newer;
+        if (peer.newer != null)
+            peer.newer.older = peer.older;
+        else
+            youngest = peer.older;
+        peer.older = null;
+        peer.newer = null;
+        peer.linked = false;
+    }
+}
@@ -25,32 +25,78 @@ package com.cerberustek.server.impl;
 
 import com.cerberustek.CerberusEvent;
 import com.cerberustek.CerberusRegistry;
-import com.cerberustek.channel.NetPipeline;
 import com.cerberustek.channel.NetValve;
 import com.cerberustek.events.*;
+import com.cerberustek.exceptions.ClientDisconnectExcpetion;
+import com.cerberustek.exceptions.ClientTimeoutException;
+import com.cerberustek.pool.BufferLease;
+import com.cerberustek.pool.SlabPool;
 import com.cerberustek.worker.Startable;
+import com.cerberustek.worker.TimerWheel;
 import com.cerberustek.worker.WorkerBoss;
 import com.cerberustek.worker.WorkerPriority;
 import com.cerberustek.worker.WorkerTask;
 import com.cerberustek.server.NetServer;
 import com.cerberustek.udp.UDPValve;
 import com.cerberustek.udp.UDPPipeline;
+import com.cerberustek.worker.impl.HashedTimerWheel;
 
 import java.io.IOException;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class UDPServer implements NetServer, Startable {
 
-    private final HashMap<SocketAddress, NetValve> valves = new HashMap<>();
-    private final HashSet<SocketAddress> banned = new HashSet<>();
+    private final ConcurrentHashMap<SocketAddress, UDPPeer> peers = new ConcurrentHashMap<>();
+    private final Collection<NetValve> valves = new AbstractCollection<NetValve>() {
+        @Override
+        public Iterator<NetValve> iterator() {
+            Iterator<UDPPeer> tr = peers.values().iterator();
+            return new Iterator<NetValve>() {
+                @Override
+                public boolean hasNext() {
+                    return tr.hasNext();
+                }
+
+                @Override
+                public NetValve next() {
+                    return tr.next().getValve();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return peers.size();
+        }
+    };
+    private final Set<SocketAddress> banned = ConcurrentHashMap.newKeySet();
 
     private final DatagramSocket socket;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final SlabPool datagramPool;
+    private final BufferLease[] batch;
+    private final SocketAddress[] sources;
     private final int bufferCapacity;
     private final int timeOut;
     private final int backlog;
+    private final TimerWheel timerWheel;
+    private final AtomicLong idleEvictions = new AtomicLong();
+    private final AtomicLong lruEvictions = new AtomicLong();
+    private final UDPPeerList lru = new UDPPeerList();
 
     private String group;
     private String connectionGroup;
@@ -58,10 +104,30 @@ public class UDPServer implements NetServer, Startable {
     private WorkerTask task;
     private WorkerBoss boss;
     private byte[] received;
+    private final DatagramPacket broadcastPacket = new DatagramPacket(new byte[0], 0);
+    private final DatagramPacket challengePacket = new DatagramPacket(new byte[0], 0);
+    private final ByteBuffer challenge;
+    private final UDPCookieJar cookies = new UDPCookieJar(UDPPipeline.COOKIE_LENGTH,
+            NetServer.DEFAULT_UDP_COOKIE_LIFETIME);
+    private final AtomicLong challenges = new AtomicLong();
+    private final AtomicLong rejectedCookies = new AtomicLong();
+    private final AtomicLong broadcasts = new AtomicLong();
+    private final AtomicLong broadcastDatagrams = new AtomicLong();
+    private final AtomicLong broadcastBytes = new AtomicLong();
+    private final AtomicLong broadcastDrops = new AtomicLong();
+    private final AtomicLong broadcastFailures = new AtomicLong();
+
+    private int mtu = NetServer.DEFAULT_UDP_MTU;
+    private int idleTimeOut = NetServer.DEFAULT_UDP_IDLE_TIMEOUT;
+    private long memoryBudget = NetServer.DEFAULT_UDP_PEER_MEMORY;
+    private int nextBroadcast = 0;
+    private long receivedDatagrams = 0;
+    private long oversizedDatagrams = 0;
+    private long receivedBatches = 0;
     boolean shouldClose = false;
 
-    public UDPServer(int port, String connectionGroup, String timeOutGroup) throws SocketException {
-        this(new DatagramSocket(port), connectionGroup, timeOutGroup);
+    public UDPServer(int port, String connectionGroup, String timeOutGroup) throws IOException {
+        this(DatagramChannel.open().bind(new InetSocketAddress(port)), connectionGroup, timeOutGroup);
     }
 
     public UDPServer(DatagramSocket socket, String connectionGroup, String timeOutGroup) {
@@ -71,12 +137,45 @@ public class UDPServer implements NetServer, Startable {
 
     public UDPServer(DatagramSocket socket, String connectionGroup, String timeOutGroup, int backlog, int timeOut, int bufferCapacity) {
         this.socket = socket;
+        this.channel = null;
+        this.selector = null;
+        this.datagramPool = null;
+        this.batch = null;
+        this.sources = null;
         this.connectionGroup = connectionGroup;
         this.timeOutGroup = timeOutGroup;
         this.timeOut = timeOut;
         this.backlog = backlog;
         this.bufferCapacity = bufferCapacity;
-        this.received = new byte[this.bufferCapacity + 4];
+        this.received = new byte[NetServer.MAX_DATAGRAM_SIZE];
+        this.challenge = ByteBuffer.allocate(UDPPipeline.COOKIE_LENGTH + 1);
+        this.timerWheel = new HashedTimerWheel(NetServer.DEFAULT_TIMER_TICK, NetServer.DEFAULT_TIMER_WHEELSIZE);
+    }
+
+    public UDPServer(DatagramChannel channel, String connectionGroup, String timeOutGroup) throws IOException {
+        this(channel, connectionGroup, timeOutGroup, NetServer.DEFAULT_BACKLOG, NetServer.DEFAULT_TIMEOUT,
+                NetServer.DEFAULT_BUFFERCAPACITY, NetServer.DEFAULT_RECEIVE_BATCH);
+    }
+
+    public UDPServer(DatagramChannel channel, String connectionGroup, String timeOutGroup, int backlog, int timeOut,
+                     int bufferCapacity, int receiveBatch) throws IOException {
+        this.channel = channel;
+        this.socket = channel.socket();
+        this.selector = Selector.open();
+        this.datagramPool = new SlabPool(NetServer.DEFAULT_SLAB_MIN, NetServer.MAX_DATAGRAM_SIZE,
+                NetServer.DEFAULT_SLAB_POOLSIZE);
+        this.batch = new BufferLease[receiveBatch];
+        this.sources = new SocketAddress[receiveBatch];
+        this.connectionGroup = connectionGroup;
+        this.timeOutGroup = timeOutGroup;
+        this.timeOut = timeOut;
+        this.backlog = backlog;
+        this.bufferCapacity = bufferCapacity;
+        this.timerWheel = new HashedTimerWheel(NetServer.DEFAULT_TIMER_TICK, NetServer.DEFAULT_TIMER_WHEELSIZE);
+        this.challenge = ByteBuffer.allocateDirect(UDPPipeline.COOKIE_LENGTH + 1);
+
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ);
     }
 
     @Override
@@ -86,21 +185,23 @@ public class UDPServer implements NetServer, Startable {
 
     @Override
     public void timeOutValve(SocketAddress remoteAddress) {
-        NetValve valve = getValve(remoteAddress);
-        if (valve != null) {
-            valve.stop();
-            valves.remove(remoteAddress);
-        }
+        if (remoteAddress == null)
+            return;
+
+        UDPPeer peer = peers.remove(remoteAddress);
+        if (peer != null)
+            release(peer);
     }
 
     @Override
     public NetValve getValve(SocketAddress remoteAddress) {
-        return valves.get(remoteAddress);
+        UDPPeer peer = remoteAddress != null ? peers.get(remoteAddress) : null;
+        return peer != null ? peer.getValve() : null;
     }
 
     @Override
     public Collection<NetValve> getValves() {
-        return valves.values();
+        return valves;
     }
 
     @Override
@@ -141,68 +242,449 @@ public class UDPServer implements NetServer, Startable {
 
     private void update(double deltaT, int i) {
         try {
-            DatagramPacket packet = new DatagramPacket(received, received.length);
-            socket.receive(packet);
-            SocketAddress remoteAddress = packet.getSocketAddress();
-
-            if (!banned.contains(remoteAddress)) {
-                NetValve valve = valves.get(packet.getSocketAddress());
-                final int length = (received[0] & 0xFF) +
-                        ((received[1] & 0xFF) << 8) +
-                        ((received[2] & 0xFF) << 16) +
-                        ((received[3] & 0xFF) << 24);
-
-                // CerberusRegistry.getInstance().debug("received: " + length + " bytes!");
-
-                if (valve != null) {
-                    valve.updateInputs(received, 4, length);
-                } else if (valves.size() < backlog) {
-                    final byte[] data = new byte[length];
-                    System.arraycopy(received, 4, data, 0, length);
-
-                    final WorkerTask task = boss.submitTask((d) -> {
-                        if (CerberusRegistry.getInstance().getService(CerberusEvent.class).executeShortEIF(
-                                new NetPreConnectionEvent(packet.getSocketAddress()))) {
-
-                            if (CerberusRegistry.getInstance().getService(CerberusEvent.class).executeShortEIF(
-                                    new NetConnectionEvent(packet.getSocketAddress(),
-                                            socket.getLocalSocketAddress(), new String(data)))) {
-
-                                NetPipeline pipe = new UDPPipeline(socket, socket.getLocalSocketAddress(),
-                                        packet.getSocketAddress());
-                                NetValve v = new UDPValve(pipe,
-                                        bufferCapacity);
-                                valves.put(packet.getSocketAddress(), v);
-                                CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
-                                        new NetPostConnectionEvent(v));
-                            }
-                        }
-                    }, WorkerPriority.LOW, connectionGroup);
-                    boss.submitTask((b) -> boss.decomissionTask(task, connectionGroup), WorkerPriority.MEDIUM, timeOutGroup,
-                            timeOut);
+            if (channel != null) {
+                selector.select(timerWheel.nextDelay());
+                selector.selectedKeys().clear();
+                timerWheel.advance();
+                drain();
+            } else {
+                long delay = timerWheel.nextDelay();
+                socket.setSoTimeout((int) (delay > 0 ? delay : Math.max(0, idleTimeOut)));
+                DatagramPacket packet = new DatagramPacket(received, received.length);
+                try {
+                    socket.receive(packet);
+                } catch (SocketTimeoutException e) {
+                    timerWheel.advance();
+                    return;
                 }
+                timerWheel.advance();
+                receivedDatagrams++;
+                receivedBatches++;
+                SocketAddress remoteAddress = packet.getSocketAddress();
+                UDPPeer peer = banned.contains(remoteAddress) ? null : peers.get(remoteAddress);
+                if (peer != null) {
+                    touch(peer, System.currentTimeMillis());
+                    peer.getValve().updateInputs(received, 0, packet.getLength());
+                } else
+                    handshake(remoteAddress, ByteBuffer.wrap(received, 0, packet.getLength()));
             }
-        } catch (IOException e) {
+        } catch (IOException | ClosedSelectorException e) {
             if (!shouldClose)
                 CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
                         new NetServerCloseEvent(this, e));
             stop();
         }
+    }
+
+    /**
+     * Receives every pending datagram into a lease which only fits the
+     * MTU, so the lease can be handed to the valve as it is. Peers never
+     * send more than the MTU; a datagram which fills the whole lease may
+     * have been truncated and is dropped. The rest of the batch is then
+     * received into full sized buffers.
+     */
+    private void drain() throws IOException {
+        int receiveSize = mtu + 1;
+        int count;
+        do {
+            count = 0;
+            while (count < batch.length) {
+                BufferLease lease = datagramPool.lease(receiveSize);
+                SocketAddress source = channel.receive(lease.buffer());
+                if (source == null) {
+                    lease.release();
+                    break;
+                }
+
+                if (!lease.buffer().hasRemaining() && receiveSize < NetServer.MAX_DATAGRAM_SIZE) {
+                    lease.release();
+                    oversizedDatagrams++;
+                    receiveSize = NetServer.MAX_DATAGRAM_SIZE;
+                    continue;
+                }
+
+                lease.buffer().flip();
+                batch[count] = lease;
+                sources[count] = source;
+                count++;
+            }
+
+            long now = System.currentTimeMillis();
+            for (int j = 0; j < count; j++) {
+                BufferLease lease = batch[j];
+                batch[j] = null;
+                try {
+                    dispatch(sources[j], lease, now);
+                } catch (RuntimeException e) {
+                    lease.release();
+                    throw e;
+                } finally {
+                    sources[j] = null;
+                }
+            }
+
+            if (count > 0) {
+                receivedDatagrams += count;
+                receivedBatches++;
+            }
+        } while (count == batch.length);
+    }
+
+    private void dispatch(SocketAddress remoteAddress, BufferLease lease, long now) {
+        UDPPeer peer = banned.contains(remoteAddress) ? null : peers.get(remoteAddress);
+        NetValve valve = null;
+        if (peer != null) {
+            touch(peer, now);
+            valve = peer.getValve();
+        }
+
+        if (valve instanceof UDPValve) {
+            ((UDPValve) valve).receive(lease);
+            return;
+        }
+
+        try {
+            if (valve != null)
+                valve.updateInputs(lease.buffer());
+            else if (!banned.contains(remoteAddress))
+                handshake(remoteAddress, lease.buffer());
+        } finally {
+            lease.release();
+        }
+    }
+
+    private void handshake(SocketAddress remoteAddress, ByteBuffer datagram) {
+        if (banned.contains(remoteAddress))
+            return;
+
+        if (!datagram.hasRemaining())
+            return;
+
+        byte type = datagram.get();
+        if (type == UDPPipeline.TYPE_DATA) {
+            if (datagram.remaining() + 1 >= UDPPipeline.COOKIE_HELLO)
+                challenge(remoteAddress);
+            return;
+        }
+
+        if (type != UDPPipeline.TYPE_COOKIE || datagram.remaining() < UDPPipeline.COOKIE_LENGTH + 4)
+            return;
+        if (!cookies.verify(remoteAddress, datagram)) {
+            rejectedCookies.incrementAndGet();
+            return;
+        }
+
+        final int length = datagram.getInt();
+        if (length < 0 || length > datagram.remaining())
+            return;
+
+        final byte[] data = new byte[length];
+        datagram.get(data);
+
+        final WorkerTask task = boss.submitTask((d) -> connect(remoteAddress, data),
+                WorkerPriority.LOW, connectionGroup);
+        boss.submitTask((b) -> boss.decomissionTask(task, connectionGroup), WorkerPriority.MEDIUM, timeOutGroup,
+                timeOut);
+    }
+
+    private void challenge(SocketAddress remoteAddress) {
+        challenge.clear();
+        challenge.put(UDPPipeline.TYPE_COOKIE);
+        cookies.bake(remoteAddress, challenge);
+        challenge.flip();
+
+        try {
+            if (channel != null) {
+                channel.send(challenge, remoteAddress);
+            } else {
+                challengePacket.setData(challenge.array(), 0, challenge.limit());
+                challengePacket.setSocketAddress(remoteAddress);
+                socket.send(challengePacket);
+            }
+            challenges.incrementAndGet();
+        } catch (IOException e) {
+            // The peer repeats its hello
+        }
+    }
+
+    private void connect(SocketAddress remoteAddress, byte[] passphrase) {
+        if (peers.containsKey(remoteAddress))
+            return;
+
+        if (CerberusRegistry.getInstance().getService(CerberusEvent.class).executeShortEIF(
+                new NetPreConnectionEvent(remoteAddress))) {
+
+            if (CerberusRegistry.getInstance().getService(CerberusEvent.class).executeShortEIF(
+                    new NetConnectionEvent(remoteAddress, socket.getLocalSocketAddress(), new String(passphrase)))) {
+
+                UDPPipeline pipe = channel != null ?
+                        new UDPPipeline(channel, socket.getLocalSocketAddress(), remoteAddress) :
+                        new UDPPipeline(socket, socket.getLocalSocketAddress(), remoteAddress);
+                pipe.setMtu(mtu);
+                NetValve v = new UDPValve(pipe, bufferCapacity);
+                long now = System.currentTimeMillis();
+                UDPPeer peer = new UDPPeer(v, remoteAddress, getPeerFootprint(), now);
+
+                synchronized (peers) {
+                    if (peers.containsKey(remoteAddress))
+                        return;
+
+                    makeRoom(peer.getFootprint());
+                    peers.put(remoteAddress, peer);
+                    lru.add(peer, now);
+                }
+                if (idleTimeOut > 0) {
+                    watch(peer, idleTimeOut);
+                    if (selector != null)
+                        selector.wakeup();
+                }
+
+                CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
+                        new NetPostConnectionEvent(v));
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently seen peers until another peer with the
+     * given footprint fits into the backlog and the memory budget.
+     * @param footprint footprint of the new peer
+     */
+    private void makeRoom(long footprint) {
+        UDPPeer eldest;
+        while ((peers.size() >= backlog || lru.getMemory() + footprint > memoryBudget)
+                && (eldest = lru.eldest()) != null) {
+            if (evict(eldest, new ClientDisconnectExcpetion(eldest.getValve())))
+                lruEvictions.incrementAndGet();
+            else
+                lru.remove(eldest);
+        }
+    }
+
+    private void touch(UDPPeer peer, long now) {
+        peer.touch(now);
+        lru.touch(peer, now);
+    }
+
+    private void watch(UDPPeer peer, long delay) {
+        peer.setTimeout(timerWheel.schedule(() -> checkIdle(peer), delay));
+    }
+
+    private void checkIdle(UDPPeer peer) {
+        if (idleTimeOut <= 0 || peers.get(peer.getRemoteAddress()) != peer)
+            return;
+
+        long idle = peer.idle(System.currentTimeMillis());
+        if (idle < idleTimeOut) {
+            watch(peer, idleTimeOut - idle);
+            return;
+        }
+
+        if (evict(peer, new ClientTimeoutException(peer.getValve(), (int) idle)))
+            idleEvictions.incrementAndGet();
+    }
+
+    private boolean evict(UDPPeer peer, Exception reason) {
+        if (!peers.remove(peer.getRemoteAddress(), peer))
+            return false;
+
+        release(peer);
+        CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
+                new NetDisconnectionEvent(peer.getValve(), reason));
+        return true;
+    }
+
+    private void release(UDPPeer peer) {
+        lru.remove(peer);
+        peer.cancelTimeout();
+        peer.getValve().stop();
+    }
+
+    public int broadcast(short channelId, ByteBuffer payload) {
+        return broadcast(channelId, payload, valves);
+    }
+
+    public synchronized int broadcast(short channelId, ByteBuffer payload, Collection<NetValve> targets) {
+        int frameCount = Math.max(1, (payload.remaining() + bufferCapacity - 1) / bufferCapacity);
+        ByteBuffer frames = ByteBuffer.allocate(payload.remaining() + frameCount * 12);
+        for (int i = 1; i <= frameCount; i++) {
+            int len = Math.min(bufferCapacity, payload.remaining());
+            ByteBuffer slice = payload.duplicate();
+            slice.limit(slice.position() + len);
+
+            frames.putInt(len + 8);
+            frames.putShort(channelId);
+            frames.putShort((short) i);
+            frames.putInt(len);
+            frames.put(slice);
+            payload.position(payload.position() + len);
+        }
+        frames.flip();
+
+        List<ByteBuffer> payloads = new ArrayList<>();
+        try {
+            UDPPipeline.pack(frames, mtu - UDPPipeline.DATA_HEADER, () -> nextBroadcast++ | Integer.MIN_VALUE,
+                    payloads);
+        } catch (IOException e) {
+            broadcastFailures.addAndGet(targets.size());
+            return 0;
+        }
+
+        ByteBuffer[] datagrams = new ByteBuffer[payloads.size()];
+        for (int i = 0; i < datagrams.length; i++) {
+            ByteBuffer part = payloads.get(i);
+            datagrams[i] = channel != null ? ByteBuffer.allocateDirect(part.remaining() + UDPPipeline.DATA_HEADER) :
+                    ByteBuffer.allocate(part.remaining() + UDPPipeline.DATA_HEADER);
+            datagrams[i].put(UDPPipeline.TYPE_DATA);
+            datagrams[i].put(part);
+            datagrams[i].flip();
+        }
+
+        int reached = 0;
+        for (NetValve valve : targets) {
+            SocketAddress remoteAddress = valve.getPipeline() instanceof UDPPipeline ?
+                    valve.getPipeline().getRemoteAddress() : null;
+            if (remoteAddress == null || valve.getPipeline().isClosed()) {
+                broadcastFailures.incrementAndGet();
+                continue;
+            }
+
+            try {
+                for (ByteBuffer datagram : datagrams) {
+                    datagram.rewind();
+                    int size = datagram.remaining();
+                    if (channel != null) {
+                        if (channel.send(datagram, remoteAddress) == 0) {
+                            broadcastDrops.incrementAndGet();
+                            continue;
+                        }
+                    } else {
+                        broadcastPacket.setData(datagram.array(), datagram.arrayOffset(), size);
+                        broadcastPacket.setSocketAddress(remoteAddress);
+                        socket.send(broadcastPacket);
+                    }
+                    broadcastDatagrams.incrementAndGet();
+                    broadcastBytes.addAndGet(size);
+                }
+                reached++;
+            } catch (IOException | RuntimeException e) {
+                broadcastFailures.incrementAndGet();
+            }
+        }
+        broadcasts.incrementAndGet();
+        return reached;
+    }
+
+    public long getBroadcasts() {
+        return broadcasts.get();
+    }
+
+    public long getBroadcastDatagrams() {
+        return broadcastDatagrams.get();
+    }
 
-        /*try {
-            valves.values().forEach(NetValve::updateOutputs);
-        } catch (ConcurrentModificationException e) {
-            // Ignore!
-        }*/
+    public long getBroadcastBytes() {
+        return broadcastBytes.get();
+    }
+
+    public long getBroadcastDrops() {
+        return broadcastDrops.get();
+    }
+
+    public long getBroadcastFailures() {
+        return broadcastFailures.get();
+    }
+
+    public long getChallenges() {
+        return challenges.get();
+    }
+
+    public long getRejectedCookies() {
+        return rejectedCookies.get();
+    }
+
+    /**
+     * @return footprint assumed for peers whose valve can't report its own
+     */
+    public long getPeerFootprint() {
+        return bufferCapacity * 4L;
+    }
+
+    /**
+     * Running total of the peer footprints, see
+     * NetValveBase.getMemoryFootprint(). Each footprint is refreshed at
+     * most once per second while its peer receives.
+     * @return bytes held by all peers
+     */
+    public long getPeerMemory() {
+        return lru.getMemory();
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    public int getIdleTimeOut() {
+        return idleTimeOut;
+    }
+
+    public void setIdleTimeOut(int idleTimeOut) {
+        this.idleTimeOut = idleTimeOut;
+    }
+
+    public long getIdleEvictions() {
+        return idleEvictions.get();
+    }
+
+    public long getLruEvictions() {
+        return lruEvictions.get();
+    }
+
+    public int getMtu() {
+        return mtu;
+    }
+
+    public void setMtu(int mtu) {
+        this.mtu = mtu;
+    }
+
+    public long getReceivedDatagrams() {
+        return receivedDatagrams;
+    }
+
+    public long getReceivedBatches() {
+        return receivedBatches;
+    }
+
+    public long getOversizedDatagrams() {
+        return oversizedDatagrams;
     }
 
     @Override
     public void stop() {
         if (!shouldClose) {
+            shouldClose = true;
             boss.decomissionTask(task, group);
-            valves.values().forEach(Startable::stop);
-            valves.clear();
-            socket.close();
+            timerWheel.clear();
+            peers.values().forEach(peer -> peer.getValve().stop());
+            peers.clear();
+            lru.clear();
+
+            if (channel != null) {
+                try {
+                    selector.close();
+                    channel.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+                datagramPool.clear();
+            } else {
+                socket.close();
+            }
         }
     }
 
@@ -0,0 +1,143 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.tcp;
+
+import java.io.IOException;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Set of socket options applied to listening, accepted and connected
+ * channels. Options left at null keep the kernel default.
+ */
+public class SocketProfile {
+
+    private static final int LOW_LATENCY_BUFFERSIZE = 64 * 1024;
+    private static final int BULK_BUFFERSIZE = 4 * 1024 * 1024;
+
+    private Boolean tcpNoDelay;
+    private Integer sendBufferSize;
+    private Integer receiveBufferSize;
+    private Boolean keepAlive;
+    private Boolean reuseAddress;
+    private Boolean reusePort;
+
+    public SocketProfile() {}
+
+    public SocketProfile(Boolean tcpNoDelay, Integer sendBufferSize, Integer receiveBufferSize, Boolean keepAlive,
+                         Boolean reuseAddress, Boolean reusePort) {
+        this.tcpNoDelay = tcpNoDelay;
+        this.sendBufferSize = sendBufferSize;
+        this.receiveBufferSize = receiveBufferSize;
+        this.keepAlive = keepAlive;
+        this.reuseAddress = reuseAddress;
+        this.reusePort = reusePort;
+    }
+
+    public static SocketProfile lowLatency() {
+        return new SocketProfile(true, LOW_LATENCY_BUFFERSIZE, LOW_LATENCY_BUFFERSIZE, true, true, null);
+    }
+
+    public static SocketProfile bulk() {
+        return new SocketProfile(false, BULK_BUFFERSIZE, BULK_BUFFERSIZE, true, true, null);
+    }
+
+    public void applyListener(ServerSocketChannel channel) throws IOException {
+        set(channel, StandardSocketOptions.SO_REUSEADDR, reuseAddress);
+        set(channel, StandardSocketOptions.SO_REUSEPORT, reusePort);
+        set(channel, StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+    }
+
+    public void apply(SocketChannel channel) throws IOException {
+        set(channel, StandardSocketOptions.TCP_NODELAY, tcpNoDelay);
+        set(channel, StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+        set(channel, StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+        set(channel, StandardSocketOptions.SO_KEEPALIVE, keepAlive);
+        set(channel, StandardSocketOptions.SO_REUSEADDR, reuseAddress);
+        set(channel, StandardSocketOptions.SO_REUSEPORT, reusePort);
+    }
+
+    private static <T> void set(NetworkChannel channel, SocketOption<T> option, T value) throws IOException {
+        if (value != null && channel.supportedOptions().contains(option))
+            channel.setOption(option, value);
+    }
+
+    public Boolean getTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(Boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public Integer getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public void setSendBufferSize(Integer sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    public Integer getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public void setReceiveBufferSize(Integer receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public Boolean getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(Boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public Boolean getReuseAddress() {
+        return reuseAddress;
+    }
+
+    public void setReuseAddress(Boolean reuseAddress) {
+        this.reuseAddress = reuseAddress;
+    }
+
+    public Boolean getReusePort() {
+        return reusePort;
+    }
+
+    public void setReusePort(Boolean reusePort) {
+        this.reusePort = reusePort;
+    }
+
+    @Override
+    public String toString() {
+        return "SocketProfile{nodelay=" + tcpNoDelay + ", sndbuf=" + sendBufferSize + ", rcvbuf=" +
+                receiveBufferSize + ", keepalive=" + keepAlive + ", reuseaddr=" + reuseAddress + ", reuseport=" +
+                reusePort + "}";
+    }
+}
@@ -25,22 +25,67 @@ package com.cerberustek.tcp;
 
 import com.cerberustek.channel.NetPipeline;
 import com.cerberustek.ConnectionType;
+import com.cerberustek.exceptions.PipelineOverflowException;
+import com.cerberustek.pool.AdaptiveReadSizer;
+import com.cerberustek.server.NetServer;
 
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
 
 public class TCPPipeline implements NetPipeline {
 
+    public static final int BULK_FRAME = -1;
+    public static final int BULK_HEADER = 10;
+
+    private static final int MAX_GATHER = 64;
+
     private final SocketChannel channel;
+    private final boolean gathering;
+    private final ByteBuffer header = ByteBuffer.allocate(4);
+    private final ByteBuffer[] frame = new ByteBuffer[2];
+    private final ByteBuffer[] raw = new ByteBuffer[1];
+    private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+
+    private SelectionKey key;
+    private int queuedBytes = 0;
+    private int highWaterMark = NetServer.DEFAULT_WRITE_HIGHWATERMARK;
+    private int blockTimeOut = NetServer.DEFAULT_WRITE_TIMEOUT;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    private boolean transferring = false;
+    private AdaptiveReadSizer readSizer = new AdaptiveReadSizer();
+
+    private long bytesWritten = 0;
+    private long writeCalls = 0;
+    private long droppedFrames = 0;
 
     public TCPPipeline(SocketChannel channel) {
+        this(channel, true);
+    }
+
+    public TCPPipeline(SocketChannel channel, boolean gathering) {
         this.channel = channel;
+        this.gathering = gathering;
+        this.frame[0] = header;
+    }
+
+    public synchronized void attach(SelectionKey key) {
+        this.key = key;
+        if (!queue.isEmpty())
+            setWriteInterest(true);
     }
 
     @Override
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
+        queue.clear();
+        queuedBytes = 0;
+        notifyAll();
         channel.close();
     }
 
@@ -51,11 +96,325 @@ public class TCPPipeline implements NetPipeline {
 
     @Override
     public synchronized void write(byte[] data, int offset, int length) throws IOException {
-        ByteBuffer buffer = ByteBuffer.allocate(length + 4);
-        buffer.putInt(length);
-        buffer.put(data, offset, length);
-        buffer.rewind();
-        channel.write(buffer);
+        if (gathering || key != null) {
+            header.clear();
+            header.putInt(length);
+            header.flip();
+            frame[1] = ByteBuffer.wrap(data, offset, length);
+
+            try {
+                send(frame, length + 4);
+            } finally {
+                frame[1] = null;
+            }
+        } else {
+            ByteBuffer buffer = ByteBuffer.allocate(length + 4);
+            buffer.putInt(length);
+            buffer.put(data, offset, length);
+            buffer.rewind();
+
+            raw[0] = buffer;
+            try {
+                send(raw, length + 4);
+            } finally {
+                raw[0] = null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void writeFrames(ByteBuffer frames) throws IOException {
+        raw[0] = frames;
+        try {
+            send(raw, frames.remaining());
+        } finally {
+            raw[0] = null;
+        }
+    }
+
+    public synchronized long transferFile(short channelId, FileChannel file, long position, long count)
+            throws IOException {
+        awaitTransfer();
+        count = Math.max(0, Math.min(count, file.size() - position));
+
+        transferring = true;
+        try {
+            drainQueue();
+
+            ByteBuffer head = ByteBuffer.allocate(BULK_HEADER);
+            long sent = 0;
+            while (sent < count) {
+                int segment = (int) Math.min(count - sent, Integer.MAX_VALUE);
+                head.clear();
+                head.putInt(BULK_FRAME);
+                head.putShort(channelId);
+                head.putInt(segment);
+                head.flip();
+
+                long since = System.currentTimeMillis();
+                while (head.hasRemaining()) {
+                    int i = channel.write(head);
+                    writeCalls++;
+                    bytesWritten += i;
+
+                    if (i > 0)
+                        since = System.currentTimeMillis();
+                    else
+                        awaitWritable(since);
+                }
+
+                long done = 0;
+                while (done < segment) {
+                    long i = file.transferTo(position + sent + done, segment - done, channel);
+                    writeCalls++;
+                    bytesWritten += i;
+                    done += i;
+
+                    if (i > 0)
+                        since = System.currentTimeMillis();
+                    else
+                        awaitWritable(since);
+                }
+                sent += segment;
+            }
+            return sent;
+        } finally {
+            transferring = false;
+            notifyAll();
+        }
+    }
+
+    private void drainQueue() throws IOException {
+        long since = System.currentTimeMillis();
+        while (!queue.isEmpty()) {
+            int before = queuedBytes;
+            flush();
+
+            if (queuedBytes < before)
+                since = System.currentTimeMillis();
+            else if (!queue.isEmpty())
+                awaitWritable(since);
+        }
+    }
+
+    private void awaitWritable(long since) throws IOException {
+        long left = since + blockTimeOut - System.currentTimeMillis();
+        if (left <= 0 || !channel.isOpen())
+            throw new IOException("File transfer stalled");
+
+        // Without a key nobody notifies, the timed wait polls instead
+        setWriteInterest(true);
+        try {
+            wait(Math.min(left, NetServer.DEFAULT_TIMER_TICK));
+        } catch (InterruptedException e) {
+            throw new IOException("File transfer interrupted", e);
+        }
+    }
+
+    private void awaitTransfer() throws IOException {
+        while (transferring) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted while waiting for a file transfer", e);
+            }
+        }
+    }
+
+    private void send(ByteBuffer[] srcs, int size) throws IOException {
+        awaitTransfer();
+        if (channel.isBlocking()) {
+            while (hasRemaining(srcs)) {
+                long i = channel.write(srcs);
+                writeCalls++;
+                bytesWritten += i;
+            }
+            return;
+        }
+
+        // Without a key yet the bytes stay queued until attach() or the
+        // next write flushes them, bounded by the overflow policy.
+        if (key == null && !queue.isEmpty())
+            flush();
+
+        if (queuedBytes > 0 && queuedBytes + size > highWaterMark && !handleOverflow(size))
+            return;
+
+        if (queue.isEmpty()) {
+            while (hasRemaining(srcs)) {
+                long i = channel.write(srcs);
+                writeCalls++;
+                bytesWritten += i;
+
+                if (i == 0)
+                    break;
+            }
+
+            if (!hasRemaining(srcs))
+                return;
+        }
+
+        int remaining = 0;
+        for (ByteBuffer src : srcs)
+            remaining += src.remaining();
+
+        ByteBuffer pending = ByteBuffer.allocate(remaining);
+        for (ByteBuffer src : srcs)
+            pending.put(src);
+        pending.flip();
+
+        queue.add(pending);
+        queuedBytes += remaining;
+        setWriteInterest(true);
+    }
+
+    private static boolean hasRemaining(ByteBuffer[] srcs) {
+        for (ByteBuffer src : srcs) {
+            if (src.hasRemaining())
+                return true;
+        }
+        return false;
+    }
+
+    private boolean handleOverflow(int size) throws IOException {
+        switch (overflowPolicy) {
+            case DROP:
+                droppedFrames++;
+                return false;
+            case FAIL:
+                throw new PipelineOverflowException(this, queuedBytes);
+            default:
+                long deadline = System.currentTimeMillis() + blockTimeOut;
+                while (queuedBytes > 0 && queuedBytes + size > highWaterMark) {
+                    if (!transferring)
+                        flush();
+                    if (queuedBytes == 0 || queuedBytes + size <= highWaterMark)
+                        break;
+
+                    if (transferring)
+                        deadline = System.currentTimeMillis() + blockTimeOut;
+
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0 || !channel.isOpen())
+                        throw new PipelineOverflowException(this, queuedBytes);
+
+                    try {
+                        wait(Math.min(left, NetServer.DEFAULT_TIMER_TICK));
+                    } catch (InterruptedException e) {
+                        throw new PipelineOverflowException(this, queuedBytes);
+                    }
+                }
+                awaitTransfer();
+                return true;
+        }
+    }
+
+    public synchronized boolean flushQueue() throws IOException {
+        if (transferring) {
+            setWriteInterest(false);
+            notifyAll();
+            return false;
+        }
+        return flush();
+    }
+
+    private boolean flush() throws IOException {
+        while (!queue.isEmpty()) {
+            int count = 0;
+            Iterator<ByteBuffer> tr = queue.iterator();
+            while (tr.hasNext() && count < gather.length)
+                gather[count++] = tr.next();
+
+            long i = channel.write(gather, 0, count);
+            writeCalls++;
+            bytesWritten += i;
+            queuedBytes -= (int) i;
+
+            while (!queue.isEmpty() && !queue.peekFirst().hasRemaining())
+                queue.pollFirst();
+
+            for (int j = 0; j < count; j++)
+                gather[j] = null;
+
+            if (i == 0)
+                break;
+        }
+
+        if (queue.isEmpty())
+            setWriteInterest(false);
+        notifyAll();
+        return queue.isEmpty();
+    }
+
+    private void setWriteInterest(boolean enabled) {
+        if (key == null || !key.isValid())
+            return;
+
+        // Atomic, the reactor clears and restores OP_READ concurrently
+        if (enabled) {
+            if ((key.interestOpsOr(SelectionKey.OP_WRITE) & SelectionKey.OP_WRITE) == 0)
+                key.selector().wakeup();
+        } else {
+            key.interestOpsAnd(~SelectionKey.OP_WRITE);
+        }
+    }
+
+    public AdaptiveReadSizer getReadSizer() {
+        return readSizer;
+    }
+
+    public void setReadSizer(AdaptiveReadSizer readSizer) {
+        this.readSizer = readSizer;
+    }
+
+    public synchronized int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public synchronized void setHighWaterMark(int highWaterMark) {
+        this.highWaterMark = highWaterMark;
+    }
+
+    public synchronized OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public synchronized void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public synchronized int getBlockTimeOut() {
+        return blockTimeOut;
+    }
+
+    public synchronized void setBlockTimeOut(int blockTimeOut) {
+        this.blockTimeOut = blockTimeOut;
+    }
+
+    public synchronized int getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public boolean isGathering() {
+        return gathering;
+    }
+
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public synchronized long getWriteCalls() {
+        return writeCalls;
+    }
+
+    public synchronized void resetCounters() {
+        bytesWritten = 0;
+        writeCalls = 0;
+        droppedFrames = 0;
     }
 
     @Override
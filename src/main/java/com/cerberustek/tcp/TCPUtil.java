@@ -23,6 +23,8 @@
 
 package com.cerberustek.tcp;
 
+import com.cerberustek.pool.AdaptiveReadSizer;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
@@ -66,6 +68,27 @@ public class TCPUtil {
         return data;
     }
 
+    public static int read(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        int i = channel.read(buffer);
+        buffer.flip();
+        return i;
+    }
+
+    public static int read(SocketChannel channel, ByteBuffer buffer, int limit) throws IOException {
+        buffer.clear();
+        buffer.limit(Math.min(limit, buffer.capacity()));
+        int i = channel.read(buffer);
+        buffer.flip();
+        return i;
+    }
+
+    public static int read(SocketChannel channel, ByteBuffer buffer, AdaptiveReadSizer sizer) throws IOException {
+        int i = read(channel, buffer, sizer.guess());
+        sizer.record(i);
+        return i;
+    }
+
     public static boolean readFully(SocketChannel channel, ByteBuffer header, int len) throws IOException {
         int read = 0;
         for (int i = channel.read(header); i != -1 && read < len; i = channel.read(header))
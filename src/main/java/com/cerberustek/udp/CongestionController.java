@@ -0,0 +1,105 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.udp;
+
+import com.cerberustek.server.NetServer;
+
+/**
+ * AIMD congestion window of one UDP peer. The window grows with every
+ * acknowledged datagram and is halved at most once per round trip when
+ * a datagram has to be retransmitted. The pacing rate spreads one
+ * window of datagrams over one smoothed round trip.
+ */
+public class CongestionController {
+
+    public static final double PACING_GAIN = 1.25;
+
+    private final RttEstimator rtt;
+    private final double minWindow;
+    private final double maxWindow;
+
+    private double cwnd;
+    private double ssthresh;
+    private long lastDecrease = 0;
+    private long losses = 0;
+
+    public CongestionController(RttEstimator rtt) {
+        this(rtt, NetServer.DEFAULT_UDP_INITIAL_CWND, NetServer.DEFAULT_UDP_MIN_CWND, NetServer.DEFAULT_UDP_WINDOW);
+    }
+
+    public CongestionController(RttEstimator rtt, double initialWindow, double minWindow, double maxWindow) {
+        this.rtt = rtt;
+        this.minWindow = minWindow;
+        this.maxWindow = maxWindow;
+        this.cwnd = initialWindow;
+        this.ssthresh = maxWindow;
+    }
+
+    public synchronized void onAcknowledged(int count) {
+        if (count <= 0)
+            return;
+
+        if (cwnd < ssthresh)
+            cwnd += count;
+        else
+            cwnd += count / cwnd;
+        cwnd = Math.min(cwnd, maxWindow);
+    }
+
+    public synchronized void onLoss() {
+        long now = System.nanoTime();
+        if (now - lastDecrease < (long) (Math.max(rtt.getSrtt(), 1) * 1e6))
+            return;
+
+        lastDecrease = now;
+        losses++;
+        ssthresh = Math.max(cwnd / 2, minWindow);
+        cwnd = ssthresh;
+    }
+
+    public synchronized int getWindow() {
+        return (int) cwnd;
+    }
+
+    public synchronized double getSlowStartThreshold() {
+        return ssthresh;
+    }
+
+    /**
+     * Returns the pacing rate in bytes per second for datagrams of the
+     * given size, or 0 as long as no round trip has been measured.
+     * @param datagramSize typical datagram size
+     * @return pacing rate
+     */
+    public synchronized double getPacingRate(int datagramSize) {
+        double srtt = rtt.getSrtt();
+        if (srtt <= 0)
+            return 0;
+        return PACING_GAIN * cwnd * datagramSize * 1000 / srtt;
+    }
+
+    public synchronized long getLosses() {
+        return losses;
+    }
+}
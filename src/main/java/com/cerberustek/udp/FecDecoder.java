@@ -0,0 +1,215 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.udp;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * Receiving side of FecEncoder. Delivers the payloads of one channel in
+ * send order, rebuilds a single missing datagram per group from the
+ * group's parity and only skips a gap once it can no longer be repaired,
+ * that is when datagrams two groups ahead arrive or too many groups are
+ * buffered.
+ */
+public class FecDecoder {
+
+    public static final int MAX_GROUPS = 8;
+
+    private final HashMap<Integer, Group> groups = new HashMap<>();
+
+    private boolean started = false;
+    private int nextGroup;
+    private int nextIndex;
+    private int newestGroup;
+    private int shards = 1;
+
+    private long delivered = 0;
+    private long recovered = 0;
+    private long lost = 0;
+    private long bufferedBytes = 0;
+
+    public synchronized void accept(byte type, ByteBuffer datagram, Consumer<ByteBuffer> deliver) {
+        if (datagram.remaining() < FecEncoder.FEC_HEADER - 1)
+            return;
+
+        datagram.getShort();
+        int groupId = datagram.getInt();
+        int index = datagram.get() & 0xFF;
+        int shards = datagram.get() & 0xFF;
+        this.shards = Math.max(1, shards);
+
+        if (!started) {
+            started = true;
+            nextGroup = groupId;
+            nextIndex = type == UDPPipeline.TYPE_FEC ? index : 0;
+            newestGroup = groupId;
+        }
+
+        if (groupId - nextGroup < 0 || (groupId == nextGroup && type == UDPPipeline.TYPE_FEC && index < nextIndex))
+            return;
+
+        if (groupId - newestGroup > 0)
+            newestGroup = groupId;
+
+        Group group = groups.get(groupId);
+        if (group == null) {
+            group = new Group(shards);
+            groups.put(groupId, group);
+        }
+
+        if (type == UDPPipeline.TYPE_FEC) {
+            if (index < group.data.length && group.data[index] == null) {
+                byte[] payload = new byte[datagram.remaining()];
+                datagram.get(payload);
+                group.data[index] = payload;
+                group.received++;
+                group.bytes += payload.length;
+                bufferedBytes += payload.length;
+            }
+        } else if (group.parity == null && datagram.remaining() >= 2) {
+            group.count = Math.min(index, group.data.length);
+            group.lengthXor = datagram.getShort() & 0xFFFF;
+            group.parity = new byte[datagram.remaining()];
+            datagram.get(group.parity);
+            group.bytes += group.parity.length;
+            bufferedBytes += group.parity.length;
+        }
+
+        repair(group);
+        drain(deliver);
+    }
+
+    private void repair(Group group) {
+        if (group.parity == null || group.received != group.count - 1)
+            return;
+
+        int missing = -1;
+        int length = group.lengthXor;
+        for (int i = 0; i < group.count; i++) {
+            if (group.data[i] == null)
+                missing = i;
+            else
+                length ^= group.data[i].length;
+        }
+        if (missing < 0 || length > group.parity.length)
+            return;
+
+        byte[] payload = new byte[length];
+        System.arraycopy(group.parity, 0, payload, 0, length);
+        for (int i = 0; i < group.count; i++) {
+            byte[] data = group.data[i];
+            if (data == null)
+                continue;
+
+            for (int j = 0; j < Math.min(length, data.length); j++)
+                payload[j] ^= data[j];
+        }
+
+        group.data[missing] = payload;
+        group.received++;
+        group.bytes += payload.length;
+        bufferedBytes += payload.length;
+        recovered++;
+    }
+
+    private void drain(Consumer<ByteBuffer> deliver) {
+        while (true) {
+            Group group = groups.get(nextGroup);
+            if (group != null && nextIndex < group.data.length && group.data[nextIndex] != null) {
+                byte[] payload = group.data[nextIndex++];
+                delivered++;
+                deliver.accept(ByteBuffer.wrap(payload));
+                continue;
+            }
+
+            if (group != null && nextIndex >= group.end()) {
+                release(groups.remove(nextGroup));
+                nextGroup++;
+                nextIndex = 0;
+                continue;
+            }
+
+            if (newestGroup - nextGroup < 2 && groups.size() <= MAX_GROUPS)
+                return;
+
+            // The gap can no longer be repaired, skip to the next payload we have
+            int next = nextIndex;
+            while (group != null && next < group.end() && group.data[next] == null)
+                next++;
+
+            if (group != null && next < group.end()) {
+                lost += next - nextIndex;
+                nextIndex = next;
+            } else {
+                // Nothing of a group arrived, assume it was a full one
+                lost += group != null ? group.end() - nextIndex : shards;
+                release(groups.remove(nextGroup));
+                nextGroup++;
+                nextIndex = 0;
+            }
+        }
+    }
+
+    private void release(Group group) {
+        if (group != null)
+            bufferedBytes -= group.bytes;
+    }
+
+    public synchronized long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    public synchronized long getDelivered() {
+        return delivered;
+    }
+
+    public synchronized long getRecovered() {
+        return recovered;
+    }
+
+    public synchronized long getLost() {
+        return lost;
+    }
+
+    private static class Group {
+
+        private final byte[][] data;
+        private byte[] parity;
+        private int count;
+        private int received = 0;
+        private int lengthXor;
+        private int bytes = 0;
+
+        private Group(int shards) {
+            this.data = new byte[Math.max(1, shards)][];
+            this.count = data.length;
+        }
+
+        private int end() {
+            return parity != null ? count : data.length;
+        }
+    }
+}
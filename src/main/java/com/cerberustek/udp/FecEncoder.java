@@ -0,0 +1,137 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.udp;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * XOR parity encoder of one UDP channel. Every group of up to k data
+ * datagrams is followed by one parity datagram, so any single datagram
+ * lost from a group can be rebuilt by the receiver.
+ *
+ * Data:   [type][short channel][int group][byte index][byte k][payload]
+ * Parity: [type][short channel][int group][byte count][byte k][short length xor][payload xor]
+ */
+public class FecEncoder {
+
+    public static final int FEC_HEADER = 9;
+    public static final int PARITY_HEADER = 11;
+
+    private final short channelId;
+    private final int dataShards;
+
+    private int group;
+    private int index = 0;
+    private int lengthXor = 0;
+    private byte[] parity = new byte[0];
+    private int parityLength = 0;
+
+    private long sentGroups = 0;
+
+    public FecEncoder(short channelId, int dataShards) {
+        this(channelId, dataShards, 0);
+    }
+
+    /**
+     * @param firstGroup group number to continue with. The receiving
+     *                   FecDecoder drops groups older than the ones it
+     *                   has already seen, so a reconfigured channel has
+     *                   to keep counting where the last encoder stopped.
+     */
+    public FecEncoder(short channelId, int dataShards, int firstGroup) {
+        if (dataShards < 1 || dataShards > 255)
+            throw new IllegalArgumentException("Data shards have to be between 1 and 255");
+
+        this.channelId = channelId;
+        this.dataShards = dataShards;
+        this.group = firstGroup;
+    }
+
+    public void encode(ByteBuffer payload, List<byte[]> datagrams) {
+        int length = payload.remaining();
+        byte[] datagram = new byte[FEC_HEADER + length];
+        header(datagram, UDPPipeline.TYPE_FEC, index);
+        payload.get(datagram, FEC_HEADER, length);
+        datagrams.add(datagram);
+
+        if (parity.length < length)
+            parity = Arrays.copyOf(parity, length);
+        for (int i = 0; i < length; i++)
+            parity[i] ^= datagram[FEC_HEADER + i];
+        parityLength = Math.max(parityLength, length);
+        lengthXor ^= length;
+
+        if (++index == dataShards)
+            flush(datagrams);
+    }
+
+    public void flush(List<byte[]> datagrams) {
+        if (index == 0)
+            return;
+
+        byte[] datagram = new byte[PARITY_HEADER + parityLength];
+        header(datagram, UDPPipeline.TYPE_FEC_PARITY, index);
+        datagram[FEC_HEADER] = (byte) (lengthXor >>> 8);
+        datagram[FEC_HEADER + 1] = (byte) lengthXor;
+        System.arraycopy(parity, 0, datagram, PARITY_HEADER, parityLength);
+        datagrams.add(datagram);
+
+        Arrays.fill(parity, 0, parityLength, (byte) 0);
+        parityLength = 0;
+        lengthXor = 0;
+        index = 0;
+        group++;
+        sentGroups++;
+    }
+
+    private void header(byte[] datagram, byte type, int index) {
+        datagram[0] = type;
+        datagram[1] = (byte) (channelId >>> 8);
+        datagram[2] = (byte) channelId;
+        datagram[3] = (byte) (group >>> 24);
+        datagram[4] = (byte) (group >>> 16);
+        datagram[5] = (byte) (group >>> 8);
+        datagram[6] = (byte) group;
+        datagram[7] = (byte) index;
+        datagram[8] = (byte) dataShards;
+    }
+
+    public boolean isPending() {
+        return index > 0;
+    }
+
+    public int getNextGroup() {
+        return isPending() ? group + 1 : group;
+    }
+
+    public int getDataShards() {
+        return dataShards;
+    }
+
+    public long getSentGroups() {
+        return sentGroups;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.udp;
+
+import com.cerberustek.server.NetServer;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reassembles frames that were split into MTU sized fragments. Partial
+ * frames are dropped once they time out or once the buffered fragments
+ * exceed the memory cap, oldest first.
+ */
+public class FragmentAssembler {
+
+    public static final int FRAGMENT_FRAME = -2;
+    public static final int FRAGMENT_HEADER = 12;
+    private static final int REFERENCE_SIZE = 8;
+
+    private final LinkedHashMap<Integer, Assembly> pending = new LinkedHashMap<>();
+    private final int timeOut;
+    private final int memoryCap;
+
+    private int memory = 0;
+    private long completed = 0;
+    private long expired = 0;
+    private long evicted = 0;
+    private long rejected = 0;
+
+    public FragmentAssembler() {
+        this(NetServer.DEFAULT_UDP_REASSEMBLY_TIMEOUT, NetServer.DEFAULT_UDP_REASSEMBLY_MEMORY);
+    }
+
+    public FragmentAssembler(int timeOut, int memoryCap) {
+        this.timeOut = timeOut;
+        this.memoryCap = memoryCap;
+    }
+
+    public static boolean isFragment(ByteBuffer payload) {
+        return payload.remaining() >= FRAGMENT_HEADER && payload.getInt(payload.position()) == FRAGMENT_FRAME;
+    }
+
+    public synchronized ByteBuffer accept(ByteBuffer fragment) {
+        fragment.getInt();
+        int id = fragment.getInt();
+        int index = fragment.getShort() & 0xFFFF;
+        int count = fragment.getShort() & 0xFFFF;
+
+        long now = System.currentTimeMillis();
+        expire(now);
+        if (index >= count)
+            return null;
+
+        // Every fragment but the last carries a full chunk, so the count
+        // can't claim more of them than fit into the largest frame
+        if (index < count - 1 && (fragment.remaining() == 0 ||
+                (long) (count - 1) * fragment.remaining() > NetServer.MAX_FRAME_SIZE)) {
+            Assembly stale = pending.remove(id);
+            if (stale != null)
+                memory -= stale.size;
+            rejected++;
+            return null;
+        }
+
+        Assembly assembly = pending.get(id);
+        if (assembly == null) {
+            assembly = new Assembly(count, now);
+            pending.put(id, assembly);
+            memory += assembly.size;
+        } else if (assembly.parts.length != count || assembly.parts[index] != null) {
+            return null;
+        }
+
+        byte[] part = new byte[fragment.remaining()];
+        fragment.get(part);
+        assembly.parts[index] = part;
+        assembly.received++;
+        assembly.size += part.length;
+        memory += part.length;
+
+        if (assembly.received == count) {
+            pending.remove(id);
+            memory -= assembly.size;
+            completed++;
+            return assembly.join();
+        }
+
+        Iterator<Assembly> tr = pending.values().iterator();
+        while (memory > memoryCap && tr.hasNext()) {
+            memory -= tr.next().size;
+            tr.remove();
+            evicted++;
+        }
+        return null;
+    }
+
+    private void expire(long now) {
+        Iterator<Map.Entry<Integer, Assembly>> tr = pending.entrySet().iterator();
+        while (tr.hasNext()) {
+            Assembly assembly = tr.next().getValue();
+            if (now - assembly.createdAt < timeOut)
+                break;
+
+            memory -= assembly.size;
+            tr.remove();
+            expired++;
+        }
+    }
+
+    public synchronized int getPending() {
+        return pending.size();
+    }
+
+    public synchronized int getMemory() {
+        return memory;
+    }
+
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    public synchronized long getExpired() {
+        return expired;
+    }
+
+    public synchronized long getEvicted() {
+        return evicted;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    private static class Assembly {
+
+        private final byte[][] parts;
+        private final long createdAt;
+        private int received = 0;
+        private int size;
+
+        private Assembly(int count, long createdAt) {
+            this.parts = new byte[count][];
+            this.createdAt = createdAt;
+            this.size = count * REFERENCE_SIZE;
+        }
+
+        private ByteBuffer join() {
+            ByteBuffer buffer = ByteBuffer.allocate(size - parts.length * REFERENCE_SIZE);
+            for (byte[] part : parts)
+                buffer.put(part);
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.udp;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sequence and acknowledgement state of one reliable UDP peer. Tracks
+ * sent datagrams until they are acknowledged and reorders received
+ * datagrams into sequence order.
+ */
+public class ReliableSession {
+
+    public static final int ACK_BITS = 32;
+
+    private final int window;
+    private final int mask;
+    private final int maxRetries;
+    private final RttEstimator rtt;
+
+    private final Pending[] sent;
+    private int sendBase = 0;
+    private int sendNext = 0;
+
+    private final byte[][] reorder;
+    private int expected = 0;
+
+    private long tracked = 0;
+    private long retransmissions = 0;
+    private long abandoned = 0;
+    private long duplicates = 0;
+    private long bufferedBytes = 0;
+
+    public ReliableSession(int window, int maxRetries, RttEstimator rtt) {
+        if (Integer.bitCount(window) != 1)
+            throw new IllegalArgumentException("Window size has to be a power of two");
+
+        this.window = window;
+        this.mask = window - 1;
+        this.maxRetries = maxRetries;
+        this.rtt = rtt;
+        this.sent = new Pending[window];
+        this.reorder = new byte[window][];
+    }
+
+    public synchronized boolean awaitWindow(long timeOut) {
+        long deadline = System.currentTimeMillis() + timeOut;
+        while (sendNext - sendBase >= window) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0)
+                return false;
+
+            try {
+                wait(left);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized int track(byte[] datagram, int offset) {
+        int seq = sendNext++;
+        tracked++;
+        datagram[offset] = (byte) (seq >>> 24);
+        datagram[offset + 1] = (byte) (seq >>> 16);
+        datagram[offset + 2] = (byte) (seq >>> 8);
+        datagram[offset + 3] = (byte) seq;
+
+        sent[seq & mask] = new Pending(datagram, System.nanoTime());
+        bufferedBytes += datagram.length;
+        return seq;
+    }
+
+    public synchronized int acknowledge(int cumulative, int bitmap) {
+        long now = System.nanoTime();
+        int count = 0;
+        while (sendBase != sendNext && cumulative - sendBase >= 0) {
+            if (acknowledge(sendBase, now))
+                count++;
+            sendBase++;
+        }
+
+        for (int i = 0; i < ACK_BITS; i++) {
+            if ((bitmap >>> i & 1) == 0)
+                continue;
+
+            int seq = cumulative + 2 + i;
+            if (seq - sendBase >= 0 && seq - sendNext < 0 && acknowledge(seq, now))
+                count++;
+        }
+        advanceBase();
+        notifyAll();
+        return count;
+    }
+
+    private boolean acknowledge(int seq, long now) {
+        Pending pending = sent[seq & mask];
+        if (pending == null)
+            return false;
+
+        if (pending.retries == 0)
+            rtt.sample((now - pending.sentAt) * 1e-6);
+        sent[seq & mask] = null;
+        bufferedBytes -= pending.datagram.length;
+        return true;
+    }
+
+    private void advanceBase() {
+        while (sendBase != sendNext && sent[sendBase & mask] == null)
+            sendBase++;
+    }
+
+    public synchronized List<byte[]> collectExpired() {
+        List<byte[]> expired = new ArrayList<>();
+        long now = System.nanoTime();
+        long rto = (long) (rtt.getRto() * 1e6);
+
+        for (int seq = sendBase; seq != sendNext; seq++) {
+            Pending pending = sent[seq & mask];
+            if (pending == null || now - pending.sentAt < rto << Math.min(pending.retries, 6))
+                continue;
+
+            if (pending.retries >= maxRetries) {
+                sent[seq & mask] = null;
+                bufferedBytes -= pending.datagram.length;
+                abandoned++;
+            } else {
+                pending.retries++;
+                pending.sentAt = now;
+                retransmissions++;
+                expired.add(pending.datagram);
+            }
+        }
+
+        advanceBase();
+        notifyAll();
+        return expired;
+    }
+
+    public synchronized long nextTimeOut() {
+        if (sendBase == sendNext)
+            return -1;
+
+        long now = System.nanoTime();
+        long rto = (long) (rtt.getRto() * 1e6);
+        long next = Long.MAX_VALUE;
+        for (int seq = sendBase; seq != sendNext; seq++) {
+            Pending pending = sent[seq & mask];
+            if (pending != null)
+                next = Math.min(next, pending.sentAt + (rto << Math.min(pending.retries, 6)) - now);
+        }
+        return next == Long.MAX_VALUE ? -1 : Math.max(1, next / 1000000);
+    }
+
+    public synchronized List<ByteBuffer> receive(int seq, ByteBuffer payload) {
+        List<ByteBuffer> ready = new ArrayList<>();
+        int distance = seq - expected;
+        if (distance < 0 || distance >= window) {
+            duplicates += distance < 0 ? 1 : 0;
+            return ready;
+        }
+
+        if (distance == 0) {
+            ready.add(payload);
+            expected++;
+
+            byte[] next;
+            while ((next = reorder[expected & mask]) != null) {
+                reorder[expected & mask] = null;
+                bufferedBytes -= next.length;
+                ready.add(ByteBuffer.wrap(next));
+                expected++;
+            }
+        } else if (reorder[seq & mask] == null) {
+            byte[] copy = new byte[payload.remaining()];
+            payload.get(copy);
+            reorder[seq & mask] = copy;
+            bufferedBytes += copy.length;
+        } else {
+            duplicates++;
+        }
+        return ready;
+    }
+
+    public synchronized int getCumulativeAck() {
+        return expected - 1;
+    }
+
+    public synchronized int getAckBitmap() {
+        int bitmap = 0;
+        for (int i = 0; i < ACK_BITS && i + 1 < window; i++) {
+            if (reorder[(expected + 1 + i) & mask] != null)
+                bitmap |= 1 << i;
+        }
+        return bitmap;
+    }
+
+    public synchronized int getUnacknowledged() {
+        return sendNext - sendBase;
+    }
+
+    public synchronized long getTracked() {
+        return tracked;
+    }
+
+    public synchronized long getRetransmissions() {
+        return retransmissions;
+    }
+
+    public synchronized long getAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * Once a datagram was abandoned, the receiver never gets past its
+     * sequence number, so nothing sent afterwards can be delivered.
+     * @return if a datagram was given up on
+     */
+    public synchronized boolean isBroken() {
+        return abandoned > 0;
+    }
+
+    public synchronized long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return bytes held by unacknowledged and out of order datagrams
+     */
+    public synchronized long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    public RttEstimator getRtt() {
+        return rtt;
+    }
+
+    private static class Pending {
+
+        private final byte[] datagram;
+        private long sentAt;
+        private int retries = 0;
+
+        private Pending(byte[] datagram, long sentAt) {
+            this.datagram = datagram;
+            this.sentAt = sentAt;
+        }
+    }
+}
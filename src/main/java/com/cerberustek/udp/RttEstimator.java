@@ -0,0 +1,73 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.udp;
+
+import com.cerberustek.server.NetServer;
+
+/**
+ * Smoothed round trip time and retransmission timeout as described in
+ * RFC 6298. All values are in milliseconds.
+ */
+public class RttEstimator {
+
+    private final double minRto;
+    private final double maxRto;
+
+    private double srtt = -1;
+    private double rttVar = 0;
+    private double rto;
+
+    public RttEstimator() {
+        this(NetServer.DEFAULT_UDP_INITIAL_RTO, NetServer.DEFAULT_UDP_MIN_RTO, NetServer.DEFAULT_UDP_MAX_RTO);
+    }
+
+    public RttEstimator(double initialRto, double minRto, double maxRto) {
+        this.minRto = minRto;
+        this.maxRto = maxRto;
+        this.rto = initialRto;
+    }
+
+    public synchronized void sample(double rtt) {
+        if (srtt < 0) {
+            srtt = rtt;
+            rttVar = rtt / 2;
+        } else {
+            rttVar = 0.75 * rttVar + 0.25 * Math.abs(srtt - rtt);
+            srtt = 0.875 * srtt + 0.125 * rtt;
+        }
+        rto = Math.max(minRto, Math.min(maxRto, srtt + Math.max(1, 4 * rttVar)));
+    }
+
+    public synchronized double getSrtt() {
+        return Math.max(srtt, 0);
+    }
+
+    public synchronized double getRttVar() {
+        return rttVar;
+    }
+
+    public synchronized double getRto() {
+        return rto;
+    }
+}
@@ -23,33 +23,119 @@
 
 package com.cerberustek.udp;
 
+import com.cerberustek.CerberusEvent;
+import com.cerberustek.CerberusRegistry;
 import com.cerberustek.channel.NetPipeline;
+import com.cerberustek.channel.NetValve;
 import com.cerberustek.ConnectionType;
+import com.cerberustek.events.NetDisconnectionEvent;
+import com.cerberustek.exceptions.PipelineOverflowException;
+import com.cerberustek.server.NetServer;
+import com.cerberustek.worker.WorkerBoss;
+import com.cerberustek.worker.WorkerPriority;
 
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 
 public class UDPPipeline implements NetPipeline {
 
+    public static final byte TYPE_DATA = 0;
+    public static final byte TYPE_RELIABLE = 1;
+    public static final byte TYPE_ACK = 2;
+    public static final byte TYPE_COOKIE = 3;
+    public static final byte TYPE_FEC = 4;
+    public static final byte TYPE_FEC_PARITY = 5;
+
+    public static final int DATA_HEADER = 1;
+    public static final int RELIABLE_HEADER = 5;
+    public static final int ACK_LENGTH = 9;
+    public static final int COOKIE_LENGTH = 8;
+    public static final int COOKIE_HELLO = COOKIE_LENGTH + 1;
+
+    private static final int CLASS_RELIABLE = Integer.MIN_VALUE;
+    private static final int CLASS_UNRELIABLE = Integer.MIN_VALUE + 1;
+
     private final SocketAddress localAddress;
     private final SocketAddress remoteAddress;
     private final DatagramSocket socket;
+    private final DatagramChannel channel;
+    private final ReliableSession session;
+    private final FragmentAssembler assembler = new FragmentAssembler();
+    private final Set<Short> unreliableChannels = ConcurrentHashMap.newKeySet();
+    private final CongestionController congestion;
+    private final ConcurrentHashMap<Short, FecEncoder> fecEncoders = new ConcurrentHashMap<>();
+    private final HashMap<Short, Integer> fecGroups = new HashMap<>();
+    private final ConcurrentHashMap<Short, FecDecoder> fecDecoders = new ConcurrentHashMap<>();
+    private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
 
-    private boolean closed;
+    private final AtomicBoolean timerPending = new AtomicBoolean(false);
+    private final AtomicBoolean pacePending = new AtomicBoolean(false);
+    private final AtomicBoolean fecPending = new AtomicBoolean(false);
+    private final AtomicLong droppedDatagrams = new AtomicLong();
+
+    private volatile boolean reliable = false;
+    private int mtu = NetServer.DEFAULT_UDP_MTU;
+    private int nextMessage = 0;
+    private volatile boolean closed;
+    private volatile byte[] passphrase;
+    private int queuedBytes = 0;
+    private long nextDeparture = 0;
+    private volatile NetValve valve;
+    private volatile WorkerBoss boss;
+    private volatile String group;
 
     public UDPPipeline(DatagramSocket socket, SocketAddress localAddress, SocketAddress remoteAddress) {
+        this(socket, null, localAddress, remoteAddress);
+    }
+
+    public UDPPipeline(DatagramChannel channel, SocketAddress localAddress, SocketAddress remoteAddress) {
+        this(channel.socket(), channel, localAddress, remoteAddress);
+    }
+
+    private UDPPipeline(DatagramSocket socket, DatagramChannel channel, SocketAddress localAddress,
+                        SocketAddress remoteAddress) {
         this.localAddress = localAddress;
         this.remoteAddress = remoteAddress;
         this.socket = socket;
+        this.channel = channel;
+        this.session = new ReliableSession(NetServer.DEFAULT_UDP_WINDOW, NetServer.DEFAULT_UDP_MAX_RETRIES,
+                new RttEstimator());
+        this.congestion = new CongestionController(session.getRtt());
 
         closed = false;
     }
 
+    public void attach(NetValve valve, WorkerBoss boss, String group) {
+        this.valve = valve;
+        this.group = group;
+        this.boss = boss;
+        scheduleRetransmit();
+    }
+
     @Override
     public void close() throws IOException {
         closed = true;
+        synchronized (queue) {
+            queue.clear();
+            queuedBytes = 0;
+            queue.notifyAll();
+        }
     }
 
     @Override
@@ -59,15 +145,573 @@ public class UDPPipeline implements NetPipeline {
 
     @Override
     public synchronized void write(byte[] data, int offset, int length) throws IOException {
-        byte[] buffer = new byte[length + 4];
-        buffer[0] = (byte) length;
-        buffer[1] = (byte) (length >>> 8);
-        buffer[2] = (byte) (length >>> 16);
-        buffer[3] = (byte) (length >>> 24);
-
-        System.arraycopy(data, 0, buffer, 4, length);
-        DatagramPacket packet = new DatagramPacket(buffer, offset, buffer.length, remoteAddress);
-        socket.send(packet);
+        ByteBuffer frame = ByteBuffer.allocate(length + 4);
+        frame.putInt(length);
+        frame.put(data, offset, length);
+        frame.flip();
+
+        short channelId = length >= 2 ? (short) (((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF)) : 0;
+        sendClass(classify(channelId), frame);
+    }
+
+    /**
+     * Will send the hello datagram carrying the passphrase. The server
+     * answers with a cookie which is echoed back together with the
+     * passphrase before the server allocates anything for this peer.
+     * @param passphrase passphrase of the connection
+     * @throws IOException if the hello could not be sent
+     */
+    public void handshake(byte[] passphrase) throws IOException {
+        this.passphrase = passphrase;
+
+        ByteBuffer hello = ByteBuffer.allocate(Math.max(COOKIE_HELLO, passphrase.length + 5));
+        hello.put(TYPE_DATA);
+        hello.putInt(passphrase.length);
+        hello.put(passphrase);
+        hello.position(hello.capacity());
+        hello.flip();
+        send(hello);
+    }
+
+    private void echoCookie(ByteBuffer cookie) {
+        byte[] passphrase = this.passphrase;
+        if (passphrase == null || cookie.remaining() < COOKIE_LENGTH)
+            return;
+
+        ByteBuffer echo = ByteBuffer.allocate(1 + COOKIE_LENGTH + 4 + passphrase.length);
+        echo.put(TYPE_COOKIE);
+        cookie.limit(cookie.position() + COOKIE_LENGTH);
+        echo.put(cookie);
+        echo.putInt(passphrase.length);
+        echo.put(passphrase);
+        echo.flip();
+
+        try {
+            send(echo);
+        } catch (IOException e) {
+            // The server challenges again on the next hello
+        }
+    }
+
+    @Override
+    public synchronized void writeFrames(ByteBuffer frames) throws IOException {
+        int first = CLASS_UNRELIABLE;
+        boolean mixed = false;
+        for (int pos = frames.position(); pos + 6 <= frames.limit(); pos += frames.getInt(pos) + 4) {
+            int cls = classify(frames.getShort(pos + 4));
+            if (pos == frames.position())
+                first = cls;
+            else if (cls != first)
+                mixed = true;
+        }
+
+        if (!mixed) {
+            sendClass(first, frames);
+            return;
+        }
+
+        LinkedHashMap<Integer, ByteBuffer> split = new LinkedHashMap<>();
+        while (frames.remaining() >= 6) {
+            ByteBuffer frame = frames.duplicate();
+            frame.limit(frames.position() + frames.getInt(frames.position()) + 4);
+            int total = frames.remaining();
+            split.computeIfAbsent(classify(frame.getShort(frame.position() + 4)), c -> ByteBuffer.allocate(total))
+                    .put(frame);
+            frames.position(frame.limit());
+        }
+
+        for (Map.Entry<Integer, ByteBuffer> entry : split.entrySet()) {
+            entry.getValue().flip();
+            sendClass(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private int classify(short channelId) {
+        if (isReliable(channelId))
+            return CLASS_RELIABLE;
+        return fecEncoders.containsKey(channelId) ? channelId : CLASS_UNRELIABLE;
+    }
+
+    private void sendClass(int cls, ByteBuffer frames) throws IOException {
+        if (cls == CLASS_RELIABLE)
+            sendFrames(frames, true);
+        else if (cls == CLASS_UNRELIABLE)
+            sendFrames(frames, false);
+        else
+            sendFec((short) cls, frames);
+    }
+
+    private void sendFec(short channelId, ByteBuffer frames) throws IOException {
+        FecEncoder encoder = fecEncoders.get(channelId);
+        if (encoder == null) {
+            sendFrames(frames, false);
+            return;
+        }
+
+        List<ByteBuffer> payloads = new ArrayList<>();
+        pack(frames, mtu - FecEncoder.PARITY_HEADER, this::nextMessageId, payloads);
+
+        List<byte[]> datagrams = new ArrayList<>();
+        for (ByteBuffer payload : payloads)
+            encoder.encode(payload, datagrams);
+        if (boss == null)
+            encoder.flush(datagrams);
+        else if (encoder.isPending())
+            scheduleFecFlush();
+
+        for (byte[] datagram : datagrams)
+            dispatch(datagram, false);
+    }
+
+    private void scheduleFecFlush() {
+        WorkerBoss boss = this.boss;
+        if (boss == null || closed || !fecPending.compareAndSet(false, true))
+            return;
+
+        boss.submitTask(d -> {
+            fecPending.set(false);
+            flushFec();
+        }, WorkerPriority.HIGH, group, (double) NetServer.DEFAULT_UDP_FEC_FLUSH);
+    }
+
+    private synchronized void flushFec() {
+        List<byte[]> datagrams = new ArrayList<>();
+        for (FecEncoder encoder : fecEncoders.values())
+            encoder.flush(datagrams);
+
+        try {
+            for (byte[] datagram : datagrams)
+                dispatch(datagram, false);
+        } catch (IOException e) {
+            // Parity is best effort
+        }
+    }
+
+    private void sendFrames(ByteBuffer frames, boolean reliable) throws IOException {
+        List<ByteBuffer> payloads = new ArrayList<>();
+        pack(frames, mtu - (reliable ? RELIABLE_HEADER : DATA_HEADER), this::nextMessageId, payloads);
+        for (ByteBuffer payload : payloads)
+            sendDatagram(payload, reliable);
+    }
+
+    private int nextMessageId() {
+        return nextMessage++ & Integer.MAX_VALUE;
+    }
+
+    public static void pack(ByteBuffer frames, int limit, IntSupplier messageIds, List<ByteBuffer> payloads)
+            throws IOException {
+        if (frames.remaining() <= limit) {
+            payloads.add(frames.slice());
+            frames.position(frames.limit());
+            return;
+        }
+
+        int start = frames.position();
+        int pos = start;
+        while (pos + 4 <= frames.limit()) {
+            int size = Math.min(frames.getInt(pos) + 4, frames.limit() - pos);
+            if (size < 4)
+                break;
+
+            if (size > limit) {
+                if (pos > start)
+                    payloads.add(slice(frames, start, pos));
+                fragment(slice(frames, pos, pos + size), limit, messageIds.getAsInt(), payloads);
+                pos += size;
+                start = pos;
+                continue;
+            }
+
+            if (pos + size - start > limit) {
+                payloads.add(slice(frames, start, pos));
+                start = pos;
+            }
+            pos += size;
+        }
+
+        if (pos > start)
+            payloads.add(slice(frames, start, pos));
+        frames.position(frames.limit());
+    }
+
+    private static void fragment(ByteBuffer frame, int limit, int id, List<ByteBuffer> payloads) throws IOException {
+        int chunk = limit - FragmentAssembler.FRAGMENT_HEADER;
+        int count = (frame.remaining() + chunk - 1) / chunk;
+        if (count > 0xFFFF)
+            throw new IOException("Frame of " + frame.remaining() + " bytes exceeds the fragment limit");
+
+        for (int i = 0; i < count; i++) {
+            int len = Math.min(chunk, frame.remaining());
+            ByteBuffer fragment = ByteBuffer.allocate(FragmentAssembler.FRAGMENT_HEADER + len);
+            fragment.putInt(FragmentAssembler.FRAGMENT_FRAME);
+            fragment.putInt(id);
+            fragment.putShort((short) i);
+            fragment.putShort((short) count);
+            fragment.put(slice(frame, frame.position(), frame.position() + len));
+            fragment.flip();
+
+            frame.position(frame.position() + len);
+            payloads.add(fragment);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int from, int to) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(to);
+        slice.position(from);
+        return slice;
+    }
+
+    private void sendDatagram(ByteBuffer payload, boolean reliable) throws IOException {
+        int header = reliable ? RELIABLE_HEADER : DATA_HEADER;
+        byte[] datagram = new byte[payload.remaining() + header];
+        datagram[0] = reliable ? TYPE_RELIABLE : TYPE_DATA;
+        payload.get(datagram, header, datagram.length - header);
+        dispatch(datagram, reliable);
+    }
+
+    private void dispatch(byte[] datagram, boolean reliable) throws IOException {
+        if (boss != null) {
+            enqueue(datagram);
+            drain();
+            return;
+        }
+
+        retransmit();
+        if (reliable) {
+            if (!session.awaitWindow(NetServer.DEFAULT_WRITE_TIMEOUT))
+                throw new PipelineOverflowException(this, session.getUnacknowledged());
+            session.track(datagram, 1);
+            scheduleRetransmit();
+        }
+        send(ByteBuffer.wrap(datagram));
+    }
+
+    private void enqueue(byte[] datagram) throws IOException {
+        synchronized (queue) {
+            long deadline = System.currentTimeMillis() + NetServer.DEFAULT_WRITE_TIMEOUT;
+            while (queuedBytes > 0 && queuedBytes + datagram.length > NetServer.DEFAULT_WRITE_HIGHWATERMARK) {
+                long left = deadline - System.currentTimeMillis();
+                if (closed)
+                    throw new IOException("Pipeline closed");
+                if (left <= 0)
+                    throw new PipelineOverflowException(this, queuedBytes);
+
+                try {
+                    queue.wait(left);
+                } catch (InterruptedException e) {
+                    throw new PipelineOverflowException(this, queuedBytes);
+                }
+            }
+
+            queue.add(datagram);
+            queuedBytes += datagram.length;
+        }
+    }
+
+    /*
+     * Sends queued datagrams as long as the congestion window has room
+     * for reliable ones and the pacer allows it. Whatever is left is
+     * sent once acknowledgements arrive or the pacing timer fires.
+     */
+    private void drain() throws IOException {
+        boolean tracked = false;
+        long delay = 0;
+
+        synchronized (queue) {
+            try {
+                while (!queue.isEmpty() && !closed) {
+                    byte[] datagram = queue.peek();
+                    boolean reliable = datagram[0] == TYPE_RELIABLE;
+                    if (reliable && session.getUnacknowledged() >= Math.min(congestion.getWindow(),
+                            NetServer.DEFAULT_UDP_WINDOW))
+                        break;
+
+                    long now = System.nanoTime();
+                    if (nextDeparture - now > 0) {
+                        delay = nextDeparture - now;
+                        break;
+                    }
+
+                    queue.poll();
+                    queuedBytes -= datagram.length;
+                    if (reliable) {
+                        session.track(datagram, 1);
+                        tracked = true;
+                    }
+                    send(ByteBuffer.wrap(datagram));
+
+                    double rate = congestion.getPacingRate(mtu);
+                    nextDeparture = rate > 0 ? Math.max(nextDeparture, now) + (long) (datagram.length * 1e9 / rate) :
+                            now;
+                }
+            } finally {
+                queue.notifyAll();
+            }
+        }
+
+        if (tracked)
+            scheduleRetransmit();
+        if (delay > 0)
+            schedulePacing(delay);
+    }
+
+    private void drainQuietly() {
+        try {
+            drain();
+        } catch (IOException e) {
+            // Drained again on the next acknowledgement or timer
+        }
+    }
+
+    private void schedulePacing(long delayNanos) {
+        WorkerBoss boss = this.boss;
+        if (boss == null || closed || !pacePending.compareAndSet(false, true))
+            return;
+
+        boss.submitTask(d -> {
+            pacePending.set(false);
+            drainQuietly();
+        }, WorkerPriority.HIGH, group, Math.max(1, delayNanos / 1000000));
+    }
+
+    public void receive(ByteBuffer datagram, Consumer<ByteBuffer> deliver) {
+        if (!datagram.hasRemaining())
+            return;
+
+        byte type = datagram.get();
+        switch (type) {
+            case TYPE_DATA:
+                deliverPayload(datagram, deliver);
+                break;
+            case TYPE_RELIABLE:
+                if (datagram.remaining() < 4)
+                    return;
+
+                List<ByteBuffer> ready = session.receive(datagram.getInt(), datagram);
+                sendAck();
+                for (ByteBuffer payload : ready)
+                    deliverPayload(payload, deliver);
+                break;
+            case TYPE_ACK:
+                if (datagram.remaining() < 8)
+                    return;
+
+                congestion.onAcknowledged(session.acknowledge(datagram.getInt(), datagram.getInt()));
+                drainQuietly();
+                break;
+            case TYPE_COOKIE:
+                echoCookie(datagram);
+                break;
+            case TYPE_FEC:
+            case TYPE_FEC_PARITY:
+                if (datagram.remaining() < 2)
+                    return;
+
+                fecDecoders.computeIfAbsent(datagram.getShort(datagram.position()), c -> new FecDecoder())
+                        .accept(type, datagram, p -> deliverPayload(p, deliver));
+                break;
+        }
+    }
+
+    private void deliverPayload(ByteBuffer payload, Consumer<ByteBuffer> deliver) {
+        if (FragmentAssembler.isFragment(payload)) {
+            ByteBuffer frame = assembler.accept(payload);
+            if (frame != null)
+                deliver.accept(frame);
+        } else {
+            deliver.accept(payload);
+        }
+    }
+
+    private void sendAck() {
+        ByteBuffer ack = ByteBuffer.allocate(ACK_LENGTH);
+        ack.put(TYPE_ACK);
+        ack.putInt(session.getCumulativeAck());
+        ack.putInt(session.getAckBitmap());
+        ack.flip();
+
+        try {
+            send(ack);
+        } catch (IOException e) {
+            // The peer retransmits and we acknowledge again
+        }
+    }
+
+    private void retransmit() throws IOException {
+        List<byte[]> expired = session.collectExpired();
+        if (session.isBroken()) {
+            IOException e = new IOException("Reliable datagram was not acknowledged after " +
+                    NetServer.DEFAULT_UDP_MAX_RETRIES + " retries");
+            if (!closed) {
+                close();
+                NetValve valve = this.valve;
+                if (valve != null)
+                    CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
+                            new NetDisconnectionEvent(valve, e));
+            }
+            throw e;
+        }
+
+        if (!expired.isEmpty())
+            congestion.onLoss();
+        for (byte[] datagram : expired)
+            send(ByteBuffer.wrap(datagram));
+    }
+
+    private void scheduleRetransmit() {
+        WorkerBoss boss = this.boss;
+        if (boss == null || closed)
+            return;
+
+        long delay = session.nextTimeOut();
+        if (delay < 0 || !timerPending.compareAndSet(false, true))
+            return;
+
+        boss.submitTask(d -> {
+            timerPending.set(false);
+            try {
+                if (!closed)
+                    retransmit();
+            } catch (IOException e) {
+                // Retried on the next timeout
+            }
+            drainQuietly();
+            scheduleRetransmit();
+        }, WorkerPriority.HIGH, group, (double) delay);
+    }
+
+    private void send(ByteBuffer datagram) throws IOException {
+        if (channel != null) {
+            if (channel.send(datagram, remoteAddress) == 0)
+                droppedDatagrams.incrementAndGet();
+        } else if (datagram.hasArray()) {
+            socket.send(new DatagramPacket(datagram.array(), datagram.arrayOffset() + datagram.position(),
+                    datagram.remaining(), remoteAddress));
+            datagram.position(datagram.limit());
+        } else {
+            byte[] data = new byte[datagram.remaining()];
+            datagram.get(data);
+            socket.send(new DatagramPacket(data, data.length, remoteAddress));
+        }
+    }
+
+    public boolean isReliable(short channelId) {
+        return reliable && !unreliableChannels.contains(channelId);
+    }
+
+    public boolean isReliable() {
+        return reliable;
+    }
+
+    public void setReliable(boolean reliable) {
+        this.reliable = reliable;
+    }
+
+    public void setChannelReliable(short channelId, boolean reliable) {
+        if (reliable)
+            unreliableChannels.remove(channelId);
+        else
+            unreliableChannels.add(channelId);
+    }
+
+    /**
+     * Will protect the unreliable datagrams of a channel with one XOR
+     * parity datagram per group of dataShards datagrams.
+     * @param channelId channel to protect
+     * @param dataShards datagrams per parity datagram, 0 to disable
+     */
+    public synchronized void setChannelFec(short channelId, int dataShards) {
+        FecEncoder previous = fecEncoders.remove(channelId);
+        if (previous != null) {
+            fecGroups.put(channelId, previous.getNextGroup());
+            if (previous.isPending()) {
+                List<byte[]> datagrams = new ArrayList<>();
+                previous.flush(datagrams);
+                try {
+                    for (byte[] datagram : datagrams)
+                        dispatch(datagram, false);
+                } catch (IOException e) {
+                    // Parity is best effort
+                }
+            }
+        }
+
+        if (dataShards > 0)
+            fecEncoders.put(channelId, new FecEncoder(channelId, dataShards, fecGroups.getOrDefault(channelId, 0)));
+    }
+
+    public int getChannelFec(short channelId) {
+        FecEncoder encoder = fecEncoders.get(channelId);
+        return encoder != null ? encoder.getDataShards() : 0;
+    }
+
+    public FecDecoder getFecDecoder(short channelId) {
+        return fecDecoders.get(channelId);
+    }
+
+    public long getFecRecovered() {
+        long recovered = 0;
+        for (FecDecoder decoder : fecDecoders.values())
+            recovered += decoder.getRecovered();
+        return recovered;
+    }
+
+    public long getFecLost() {
+        long lost = 0;
+        for (FecDecoder decoder : fecDecoders.values())
+            lost += decoder.getLost();
+        return lost;
+    }
+
+    public synchronized int getMtu() {
+        return mtu;
+    }
+
+    public synchronized void setMtu(int mtu) {
+        this.mtu = Math.max(RELIABLE_HEADER + FragmentAssembler.FRAGMENT_HEADER + 1,
+                Math.min(mtu, NetServer.MAX_DATAGRAM_SIZE));
+    }
+
+    public FragmentAssembler getAssembler() {
+        return assembler;
+    }
+
+    public ReliableSession getSession() {
+        return session;
+    }
+
+    public CongestionController getCongestion() {
+        return congestion;
+    }
+
+    public int getCongestionWindow() {
+        return congestion.getWindow();
+    }
+
+    public double getPacingRate() {
+        return congestion.getPacingRate(mtu);
+    }
+
+    public int getQueuedBytes() {
+        synchronized (queue) {
+            return queuedBytes;
+        }
+    }
+
+    /**
+     * @return bytes currently held for this peer by the send queue, the
+     * reliability window, the fragment assembler and the FEC decoders
+     */
+    public long getMemoryFootprint() {
+        long footprint = getQueuedBytes() + session.getBufferedBytes() + assembler.getMemory();
+        for (FecDecoder decoder : fecDecoders.values())
+            footprint += decoder.getBufferedBytes();
+        return footprint;
+    }
+
+    public long getDroppedDatagrams() {
+        return droppedDatagrams.get();
     }
 
     @Override
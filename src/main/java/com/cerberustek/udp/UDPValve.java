@@ -28,12 +28,26 @@ import com.cerberustek.CerberusRegistry;
 import com.cerberustek.channel.NetPipeline;
 import com.cerberustek.channel.NetValve;
 import com.cerberustek.events.NetValveStartEvent;
+import com.cerberustek.pool.BufferLease;
+import com.cerberustek.server.NetServer;
 import com.cerberustek.valve.NetValveBase;
 import com.cerberustek.worker.WorkerBoss;
 import com.cerberustek.worker.WorkerPriority;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 public class UDPValve extends NetValveBase implements NetValve {
 
+    private final ConcurrentLinkedQueue<BufferLease> received = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger receivedCount = new AtomicInteger();
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private final AtomicBoolean decoding = new AtomicBoolean(false);
+    private final AtomicLong droppedDatagrams = new AtomicLong();
+
     public UDPValve(NetPipeline pipeline, int bufferCapacity) {
         super(pipeline, bufferCapacity);
     }
@@ -44,7 +58,136 @@ public class UDPValve extends NetValveBase implements NetValve {
         this.group = workerGroup;
         this.priority = priority;
 
+        if (getPipeline() instanceof UDPPipeline)
+            ((UDPPipeline) getPipeline()).attach(this, boss, workerGroup);
+
         CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIF(new NetValveStartEvent(this));
+        scheduleDecode();
+    }
+
+    @Override
+    public void updateInputs(byte[] data, int off, int len) {
+        updateInputs(ByteBuffer.wrap(data, off, len));
+    }
+
+    @Override
+    public void updateInputs(ByteBuffer data) {
+        if (getPipeline() instanceof UDPPipeline)
+            ((UDPPipeline) getPipeline()).receive(data, super::updateInputs);
+        else
+            super.updateInputs(data);
+    }
+
+    public void setReliable(boolean reliable) {
+        if (getPipeline() instanceof UDPPipeline)
+            ((UDPPipeline) getPipeline()).setReliable(reliable);
+    }
+
+    public void setChannelReliable(short channelId, boolean reliable) {
+        if (getPipeline() instanceof UDPPipeline)
+            ((UDPPipeline) getPipeline()).setChannelReliable(channelId, reliable);
+    }
+
+    public void setChannelFec(short channelId, int dataShards) {
+        if (getPipeline() instanceof UDPPipeline)
+            ((UDPPipeline) getPipeline()).setChannelFec(channelId, dataShards);
+    }
+
+    public long getFecRecovered() {
+        return getPipeline() instanceof UDPPipeline ? ((UDPPipeline) getPipeline()).getFecRecovered() : 0;
+    }
+
+    public long getFecLost() {
+        return getPipeline() instanceof UDPPipeline ? ((UDPPipeline) getPipeline()).getFecLost() : 0;
+    }
+
+    public int getCongestionWindow() {
+        return getPipeline() instanceof UDPPipeline ? ((UDPPipeline) getPipeline()).getCongestionWindow() : 0;
+    }
+
+    public double getPacingRate() {
+        return getPipeline() instanceof UDPPipeline ? ((UDPPipeline) getPipeline()).getPacingRate() : 0;
+    }
+
+    public int getQueuedBytes() {
+        return getPipeline() instanceof UDPPipeline ? ((UDPPipeline) getPipeline()).getQueuedBytes() : 0;
+    }
+
+    public void receive(BufferLease lease) {
+        if (boss == null && received.isEmpty()) {
+            try {
+                updateInputs(lease.buffer());
+            } finally {
+                lease.release();
+            }
+            return;
+        }
+
+        if (receivedCount.incrementAndGet() > NetServer.DEFAULT_RECEIVE_QUEUE) {
+            receivedCount.decrementAndGet();
+            droppedDatagrams.incrementAndGet();
+            lease.release();
+            return;
+        }
+
+        receivedBytes.addAndGet(lease.capacity());
+        received.add(lease);
+        scheduleDecode();
+    }
+
+    private void scheduleDecode() {
+        if (boss != null && !received.isEmpty() && decoding.compareAndSet(false, true))
+            boss.submitTask(delta -> decode(), priority, group);
+    }
+
+    private void decode() {
+        BufferLease lease;
+        while (!isThrottled() && (lease = received.poll()) != null) {
+            receivedCount.decrementAndGet();
+            receivedBytes.addAndGet(-lease.capacity());
+            try {
+                updateInputs(lease.buffer());
+            } finally {
+                lease.release();
+            }
+        }
+
+        decoding.set(false);
+        if (isThrottled()) {
+            // Leave the datagrams queued until the channel workers caught up,
+            // receive() drops once the queue is full.
+            onResume(this::scheduleDecode);
+            return;
+        }
+        scheduleDecode();
+    }
+
+    @Override
+    public long getMemoryFootprint() {
+        long footprint = super.getMemoryFootprint() + receivedBytes.get();
+        if (getPipeline() instanceof UDPPipeline)
+            footprint += ((UDPPipeline) getPipeline()).getMemoryFootprint();
+        return footprint;
+    }
+
+    public int getPendingDatagrams() {
+        return receivedCount.get();
+    }
+
+    public long getDroppedDatagrams() {
+        return droppedDatagrams.get();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+
+        BufferLease lease;
+        while ((lease = received.poll()) != null) {
+            receivedCount.decrementAndGet();
+            receivedBytes.addAndGet(-lease.capacity());
+            lease.release();
+        }
     }
 
     /*
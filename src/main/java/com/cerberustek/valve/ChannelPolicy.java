@@ -0,0 +1,84 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.valve;
+
+/**
+ * Decides per channel whether a DualStackValve sends a message over UDP
+ * or TCP. A message goes over UDP only if it fits into a single frame of
+ * at most maxUdpSize bytes, its reliability requirement can be met by
+ * the UDP pipeline and the measured UDP round trip time is below maxRtt.
+ */
+public class ChannelPolicy {
+
+    private int maxUdpSize;
+    private boolean reliable;
+    private double maxRtt;
+
+    public ChannelPolicy(int maxUdpSize, boolean reliable, double maxRtt) {
+        this.maxUdpSize = maxUdpSize;
+        this.reliable = reliable;
+        this.maxRtt = maxRtt;
+    }
+
+    public static ChannelPolicy tcp() {
+        return new ChannelPolicy(0, true, 0);
+    }
+
+    public static ChannelPolicy latency(int maxUdpSize) {
+        return new ChannelPolicy(maxUdpSize, false, 0);
+    }
+
+    public static ChannelPolicy reliableLatency(int maxUdpSize, double maxRtt) {
+        return new ChannelPolicy(maxUdpSize, true, maxRtt);
+    }
+
+    public int getMaxUdpSize() {
+        return maxUdpSize;
+    }
+
+    public void setMaxUdpSize(int maxUdpSize) {
+        this.maxUdpSize = maxUdpSize;
+    }
+
+    public boolean isReliable() {
+        return reliable;
+    }
+
+    public void setReliable(boolean reliable) {
+        this.reliable = reliable;
+    }
+
+    public double getMaxRtt() {
+        return maxRtt;
+    }
+
+    public void setMaxRtt(double maxRtt) {
+        this.maxRtt = maxRtt;
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelPolicy{maxUdpSize=" + maxUdpSize + ", reliable=" + reliable + ", maxRtt=" + maxRtt + "}";
+    }
+}
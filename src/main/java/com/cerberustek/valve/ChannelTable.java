@@ -0,0 +1,211 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.valve;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Channel registry keyed by primitive channel ids. Ids below DENSE_SIZE
+ * live in a plain array, all other ids in a copy on write open addressing
+ * table. Lookups take no lock and never box the id. A two level bitmap
+ * of the non-negative ids in use finds the lowest free id in constant
+ * time. Modifications are synchronized.
+ */
+public class ChannelTable<T> {
+
+    public static final int DENSE_SIZE = 256;
+
+    private static final int ID_COUNT = Short.MAX_VALUE + 1;
+
+    private final AtomicReferenceArray<T> dense = new AtomicReferenceArray<>(DENSE_SIZE);
+    private final long[] used = new long[ID_COUNT / 64];
+    private final long[] full = new long[used.length / 64];
+
+    private volatile Sparse sparse = new Sparse(8);
+    private volatile int size = 0;
+
+    public T get(short id) {
+        if (id >= 0 && id < DENSE_SIZE)
+            return dense.get(id);
+        return sparse.get(id);
+    }
+
+    public synchronized T put(short id, T value) {
+        if (value == null)
+            return remove(id);
+
+        T previous;
+        if (id >= 0 && id < DENSE_SIZE) {
+            previous = dense.getAndSet(id, value);
+        } else {
+            previous = sparse.get(id);
+            sparse = sparse.with(id, value);
+        }
+
+        if (previous == null) {
+            size++;
+            mark(id, true);
+        }
+        return previous;
+    }
+
+    public synchronized T remove(short id) {
+        T previous;
+        if (id >= 0 && id < DENSE_SIZE) {
+            previous = dense.getAndSet(id, null);
+        } else {
+            previous = sparse.get(id);
+            if (previous != null)
+                sparse = sparse.without(id);
+        }
+
+        if (previous != null) {
+            size--;
+            mark(id, false);
+        }
+        return previous;
+    }
+
+    /**
+     * Returns the lowest non-negative id which is not in use.
+     * @return free id
+     * @throws IllegalStateException if all ids are taken
+     */
+    public synchronized short nextFree() {
+        for (int i = 0; i < full.length; i++) {
+            if (full[i] == -1L)
+                continue;
+
+            int word = i * 64 + Long.numberOfTrailingZeros(~full[i]);
+            return (short) (word * 64 + Long.numberOfTrailingZeros(~used[word]));
+        }
+        throw new IllegalStateException("No free channel id left");
+    }
+
+    public void forEach(Consumer<T> action) {
+        for (int i = 0; i < DENSE_SIZE; i++) {
+            T value = dense.get(i);
+            if (value != null)
+                action.accept(value);
+        }
+        sparse.forEach(action);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void mark(short id, boolean inUse) {
+        if (id < 0)
+            return;
+
+        int word = id >>> 6;
+        if (inUse)
+            used[word] |= 1L << id;
+        else
+            used[word] &= ~(1L << id);
+
+        if (used[word] == -1L)
+            full[word >>> 6] |= 1L << word;
+        else
+            full[word >>> 6] &= ~(1L << word);
+    }
+
+    private static class Sparse {
+
+        private final short[] keys;
+        private final Object[] values;
+        private final int mask;
+        private final int count;
+
+        private Sparse(int capacity) {
+            this.keys = new short[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+            this.count = 0;
+        }
+
+        private Sparse(short[] keys, Object[] values, int count) {
+            this.keys = keys;
+            this.values = values;
+            this.mask = keys.length - 1;
+            this.count = count;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T get(short id) {
+            for (int i = hash(id) & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == id)
+                    return (T) values[i];
+            }
+            return null;
+        }
+
+        private Sparse with(short id, Object value) {
+            boolean replace = get(id) != null;
+            int capacity = keys.length;
+            while ((count + 1) * 2 > capacity)
+                capacity <<= 1;
+
+            Sparse copy = rebuild(capacity, id, replace ? count : count + 1);
+            copy.insert(id, value);
+            return copy;
+        }
+
+        private Sparse without(short id) {
+            return rebuild(keys.length, id, count - 1);
+        }
+
+        private Sparse rebuild(int capacity, short skip, int count) {
+            Sparse copy = new Sparse(new short[capacity], new Object[capacity], count);
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != null && keys[i] != skip)
+                    copy.insert(keys[i], values[i]);
+            }
+            return copy;
+        }
+
+        private void insert(short id, Object value) {
+            int i = hash(id) & mask;
+            while (values[i] != null)
+                i = (i + 1) & mask;
+            keys[i] = id;
+            values[i] = value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> void forEach(Consumer<T> action) {
+            for (Object value : values) {
+                if (value != null)
+                    action.accept((T) value);
+            }
+        }
+
+        private static int hash(short id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.valve;
+
+import com.cerberustek.ConnectionType;
+import com.cerberustek.channel.NetPipeline;
+import com.cerberustek.server.NetServer;
+import com.cerberustek.tcp.TCPPipeline;
+import com.cerberustek.udp.UDPPipeline;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipeline which sends every channel frame over either a TCP or a UDP
+ * pipeline according to the channel's policy. Each channel is pinned
+ * to a transport, which is only reconsidered on the first frame of a
+ * message once nothing is in flight on the pinned one, so frames of a
+ * channel never overtake each other across transports. UDP is skipped
+ * for a while whenever its retransmission rate passes the loss
+ * threshold.
+ */
+public class DualStackPipeline implements NetPipeline {
+
+    private static final long LOSS_INTERVAL = 1000;
+    private static final long MIN_LOSS_SAMPLES = 16;
+
+    private final NetPipeline tcp;
+    private final NetPipeline udp;
+    private final int frameCapacity;
+    private final ConcurrentHashMap<Short, ChannelPolicy> policies = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Short, Boolean> routes = new ConcurrentHashMap<>();
+    private final AtomicLong udpMessages = new AtomicLong();
+    private final AtomicLong tcpMessages = new AtomicLong();
+
+    private volatile ChannelPolicy defaultPolicy = ChannelPolicy.tcp();
+    private double lossThreshold = NetServer.DEFAULT_DUALSTACK_LOSS_THRESHOLD;
+    private long probeDelay = NetServer.DEFAULT_DUALSTACK_PROBE_DELAY;
+
+    private long lastSample = 0;
+    private long lastTracked = 0;
+    private long lastRetransmissions = 0;
+    private double lossRate = 0;
+    private long degradedUntil = 0;
+    private long fallbacks = 0;
+
+    public DualStackPipeline(NetPipeline tcp, NetPipeline udp, int frameCapacity) {
+        this.tcp = tcp;
+        this.udp = udp;
+        this.frameCapacity = frameCapacity;
+    }
+
+    @Override
+    public void write(byte[] data) throws IOException {
+        write(data, 0, data.length);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        if (length < 8) {
+            tcp.write(data, offset, length);
+            return;
+        }
+
+        short channelId = (short) (((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF));
+        short index = (short) (((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF));
+        pipeline(route(channelId, index, length - 8)).write(data, offset, length);
+    }
+
+    @Override
+    public void writeFrames(ByteBuffer frames) throws IOException {
+        ByteBuffer udpBatch = null;
+        ByteBuffer tcpBatch = null;
+        int total = frames.remaining();
+
+        while (frames.remaining() >= 12) {
+            int pos = frames.position();
+            int size = frames.getInt(pos) + 4;
+            ByteBuffer frame = frames.duplicate();
+            frame.limit(pos + Math.min(size, frames.remaining()));
+            frames.position(frame.limit());
+
+            boolean overUdp = route(frame.getShort(pos + 4), frame.getShort(pos + 6), frame.getInt(pos + 8));
+            if (overUdp) {
+                if (udpBatch == null)
+                    udpBatch = ByteBuffer.allocate(total);
+                udpBatch.put(frame);
+            } else {
+                if (tcpBatch == null)
+                    tcpBatch = ByteBuffer.allocate(total);
+                tcpBatch.put(frame);
+            }
+        }
+
+        if (tcpBatch != null) {
+            tcpBatch.flip();
+            tcp.writeFrames(tcpBatch);
+        }
+        if (udpBatch != null) {
+            udpBatch.flip();
+            udp.writeFrames(udpBatch);
+        }
+    }
+
+    private NetPipeline pipeline(boolean overUdp) {
+        return overUdp ? udp : tcp;
+    }
+
+    private boolean route(short channelId, short index, int payloadLength) {
+        Boolean pinned = routes.get(channelId);
+        boolean overUdp;
+        if (pinned == null || index == 1 && (isQuiescent(pinned) || !canCarry(pinned, channelId, payloadLength))) {
+            overUdp = chooseUdp(channelId, payloadLength);
+            routes.put(channelId, overUdp);
+        } else {
+            overUdp = pinned;
+        }
+
+        if (index == 1)
+            (overUdp ? udpMessages : tcpMessages).incrementAndGet();
+        return overUdp;
+    }
+
+    /**
+     * Returns true if a transport has nothing queued and, for UDP, no
+     * reliable datagram waiting for its ack. Only then a channel may move
+     * to the other transport without its frames arriving out of order.
+     * Unreliable datagrams already on the wire can't be tracked, those
+     * channels accept reordering anyway.
+     * @param overUdp transport to check
+     * @return if switching away from it is safe
+     */
+    private boolean isQuiescent(boolean overUdp) {
+        if (overUdp) {
+            if (!(udp instanceof UDPPipeline))
+                return true;
+            UDPPipeline pipeline = (UDPPipeline) udp;
+            return pipeline.getQueuedBytes() == 0 && pipeline.getSession().getUnacknowledged() == 0;
+        }
+        return !(tcp instanceof TCPPipeline) || ((TCPPipeline) tcp).getQueuedBytes() == 0;
+    }
+
+    private boolean canCarry(boolean overUdp, short channelId, int payloadLength) {
+        if (!overUdp)
+            return tcp != null && !tcp.isClosed();
+        return udp != null && !udp.isClosed() && payloadLength <= getPolicy(channelId).getMaxUdpSize()
+                && payloadLength < frameCapacity;
+    }
+
+    private boolean chooseUdp(short channelId, int payloadLength) {
+        if (udp == null || udp.isClosed())
+            return false;
+        if (tcp == null || tcp.isClosed())
+            return true;
+
+        ChannelPolicy policy = getPolicy(channelId);
+        if (payloadLength > policy.getMaxUdpSize() || payloadLength >= frameCapacity)
+            return false;
+
+        UDPPipeline pipeline = udp instanceof UDPPipeline ? (UDPPipeline) udp : null;
+        if (policy.isReliable() && (pipeline == null || !pipeline.isReliable(channelId)))
+            return false;
+
+        if (policy.getMaxRtt() > 0 && pipeline != null) {
+            double srtt = pipeline.getSession().getRtt().getSrtt();
+            if (srtt > policy.getMaxRtt())
+                return false;
+        }
+        return !isDegraded();
+    }
+
+    /**
+     * Returns true while UDP is avoided because its retransmission rate
+     * was above the loss threshold. The rate is sampled at most once per
+     * second and UDP is probed again after the probe delay.
+     * @return if UDP is degraded
+     */
+    public synchronized boolean isDegraded() {
+        long now = System.currentTimeMillis();
+        if (udp instanceof UDPPipeline && now - lastSample >= LOSS_INTERVAL) {
+            UDPPipeline pipeline = (UDPPipeline) udp;
+            long tracked = pipeline.getSession().getTracked();
+            long retransmissions = pipeline.getSession().getRetransmissions();
+            long sent = tracked - lastTracked;
+
+            if (sent >= MIN_LOSS_SAMPLES) {
+                lossRate = (double) (retransmissions - lastRetransmissions) / sent;
+                if (lossRate > lossThreshold && now >= degradedUntil) {
+                    degradedUntil = now + probeDelay;
+                    fallbacks++;
+                }
+            }
+
+            lastSample = now;
+            lastTracked = tracked;
+            lastRetransmissions = retransmissions;
+        }
+        return now < degradedUntil;
+    }
+
+    public ChannelPolicy getPolicy(short channelId) {
+        ChannelPolicy policy = policies.get(channelId);
+        return policy != null ? policy : defaultPolicy;
+    }
+
+    public void setPolicy(short channelId, ChannelPolicy policy) {
+        if (policy == null)
+            policies.remove(channelId);
+        else
+            policies.put(channelId, policy);
+    }
+
+    public ChannelPolicy getDefaultPolicy() {
+        return defaultPolicy;
+    }
+
+    public void setDefaultPolicy(ChannelPolicy defaultPolicy) {
+        this.defaultPolicy = defaultPolicy != null ? defaultPolicy : ChannelPolicy.tcp();
+    }
+
+    public synchronized double getLossThreshold() {
+        return lossThreshold;
+    }
+
+    public synchronized void setLossThreshold(double lossThreshold) {
+        this.lossThreshold = lossThreshold;
+    }
+
+    public synchronized long getProbeDelay() {
+        return probeDelay;
+    }
+
+    public synchronized void setProbeDelay(long probeDelay) {
+        this.probeDelay = probeDelay;
+    }
+
+    public synchronized double getLossRate() {
+        return lossRate;
+    }
+
+    public synchronized long getFallbacks() {
+        return fallbacks;
+    }
+
+    public long getUdpMessages() {
+        return udpMessages.get();
+    }
+
+    public long getTcpMessages() {
+        return tcpMessages.get();
+    }
+
+    public NetPipeline getTcp() {
+        return tcp;
+    }
+
+    public NetPipeline getUdp() {
+        return udp;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (udp != null)
+                udp.close();
+        } finally {
+            if (tcp != null)
+                tcp.close();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return (tcp == null || tcp.isClosed()) && (udp == null || udp.isClosed());
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        return tcp != null ? tcp.getRemoteAddress() : udp.getRemoteAddress();
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return tcp != null ? tcp.getLocalAddress() : udp.getLocalAddress();
+    }
+
+    @Override
+    public ConnectionType getConnectionType() {
+        return tcp != null && !tcp.isClosed() ? ConnectionType.TCP : ConnectionType.UDP;
+    }
+}
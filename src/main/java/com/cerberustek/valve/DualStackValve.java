@@ -0,0 +1,131 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.valve;
+
+import com.cerberustek.CerberusEvent;
+import com.cerberustek.CerberusRegistry;
+import com.cerberustek.channel.NetValve;
+import com.cerberustek.channel.impl.OutputChannel;
+import com.cerberustek.events.NetValveStartEvent;
+import com.cerberustek.worker.WorkerBoss;
+import com.cerberustek.worker.WorkerPriority;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Valve which combines the TCP and the UDP valve of one peer. Channels
+ * opened on it are routed over either transport per message according
+ * to their ChannelPolicy, while frames received by both valves are
+ * processed by this valve's input channels. Both sides of a connection
+ * have to use a DualStackValve for the channels to line up.
+ */
+public class DualStackValve extends NetValveBase implements NetValve {
+
+    private final NetValve tcpValve;
+    private final NetValve udpValve;
+    private final DualStackPipeline dualPipeline;
+
+    public DualStackValve(NetValve tcpValve, NetValve udpValve, int bufferCapacity) {
+        this(tcpValve, udpValve, new DualStackPipeline(tcpValve.getPipeline(), udpValve.getPipeline(),
+                bufferCapacity), bufferCapacity);
+    }
+
+    private DualStackValve(NetValve tcpValve, NetValve udpValve, DualStackPipeline pipeline, int bufferCapacity) {
+        super(pipeline, bufferCapacity);
+        this.tcpValve = tcpValve;
+        this.udpValve = udpValve;
+        this.dualPipeline = pipeline;
+
+        if (tcpValve instanceof NetValveBase)
+            ((NetValveBase) tcpValve).setFrameTarget(this);
+        if (udpValve instanceof NetValveBase)
+            ((NetValveBase) udpValve).setFrameTarget(this);
+    }
+
+    @Override
+    public void start(WorkerBoss boss, String workerGroup, WorkerPriority priority) {
+        this.boss = boss;
+        this.group = workerGroup;
+        this.priority = priority;
+
+        CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIF(new NetValveStartEvent(this));
+    }
+
+    @Override
+    public void stop() {
+        if (tcpValve instanceof NetValveBase)
+            ((NetValveBase) tcpValve).setFrameTarget(null);
+        if (udpValve instanceof NetValveBase)
+            ((NetValveBase) udpValve).setFrameTarget(null);
+
+        super.stop();
+        tcpValve.stop();
+        udpValve.stop();
+    }
+
+    @Override
+    protected synchronized void processFrame(byte[] data, int offset, int length) {
+        super.processFrame(data, offset, length);
+    }
+
+    @Override
+    public void sendFile(short channelId, FileChannel file, long position, long length) throws IOException {
+        OutputChannel channel = findOutputChannel(channelId);
+        if (channel != null)
+            channel.flush();
+        getCoalescer().flush();
+
+        tcpValve.sendFile(channelId, file, position, length);
+    }
+
+    @Override
+    public void receiveFile(short channelId, FileChannel target, long position, long length) {
+        tcpValve.receiveFile(channelId, target, position, length);
+    }
+
+    public void setPolicy(short channelId, ChannelPolicy policy) {
+        dualPipeline.setPolicy(channelId, policy);
+    }
+
+    public ChannelPolicy getPolicy(short channelId) {
+        return dualPipeline.getPolicy(channelId);
+    }
+
+    public void setDefaultPolicy(ChannelPolicy policy) {
+        dualPipeline.setDefaultPolicy(policy);
+    }
+
+    public DualStackPipeline getDualPipeline() {
+        return dualPipeline;
+    }
+
+    public NetValve getTcpValve() {
+        return tcpValve;
+    }
+
+    public NetValve getUdpValve() {
+        return udpValve;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.valve;
+
+import com.cerberustek.CerberusEvent;
+import com.cerberustek.CerberusRegistry;
+import com.cerberustek.ConnectionType;
+import com.cerberustek.channel.NetPipeline;
+import com.cerberustek.channel.NetValve;
+import com.cerberustek.events.NetDisconnectionEvent;
+import com.cerberustek.worker.WorkerBoss;
+import com.cerberustek.worker.WorkerPriority;
+import com.cerberustek.worker.WorkerTask;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Collects the frames of all output channels of a valve and hands
+ * them to the underlying pipeline as one batch, either once the byte
+ * budget is full, the latency bound has passed or the valve finished
+ * its output cycle.
+ */
+public class FrameCoalescer implements NetPipeline {
+
+    private final NetPipeline pipeline;
+    private final NetValve valve;
+
+    private ByteBuffer batch;
+    private double maxDelay;
+    private boolean enabled;
+    private WorkerTask flushTask;
+
+    private long frames = 0;
+    private long batches = 0;
+
+    public FrameCoalescer(NetPipeline pipeline, NetValve valve) {
+        this.pipeline = pipeline;
+        this.valve = valve;
+        this.enabled = false;
+    }
+
+    public synchronized void enable(double maxDelay, int byteBudget) {
+        flushQuietly();
+        if (batch == null || batch.capacity() != byteBudget)
+            batch = ByteBuffer.allocate(byteBudget);
+        this.maxDelay = maxDelay;
+        this.enabled = true;
+    }
+
+    public synchronized void disable() {
+        flushQuietly();
+        enabled = false;
+        batch = null;
+    }
+
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public synchronized void write(byte[] data) throws IOException {
+        write(data, 0, data.length);
+    }
+
+    @Override
+    public synchronized void write(byte[] data, int offset, int length) throws IOException {
+        WorkerBoss boss = valve.getBoss();
+        if (!enabled || boss == null) {
+            pipeline.write(data, offset, length);
+            return;
+        }
+
+        if (length + 4 > batch.capacity()) {
+            flush();
+            pipeline.write(data, offset, length);
+            return;
+        }
+
+        if (length + 4 > batch.remaining())
+            flush();
+
+        batch.putInt(length);
+        batch.put(data, offset, length);
+        frames++;
+
+        if (!batch.hasRemaining())
+            flush();
+        else if (flushTask == null)
+            flushTask = boss.submitTask(delta -> timedFlush(), WorkerPriority.HIGH, valve.getGroup(), maxDelay);
+    }
+
+    @Override
+    public synchronized void writeFrames(ByteBuffer frames) throws IOException {
+        flush();
+        pipeline.writeFrames(frames);
+    }
+
+    public synchronized void flush() throws IOException {
+        if (batch == null || batch.position() == 0)
+            return;
+
+        batch.flip();
+        try {
+            pipeline.writeFrames(batch);
+            batches++;
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private void timedFlush() {
+        synchronized (this) {
+            flushTask = null;
+        }
+        flushQuietly();
+    }
+
+    private synchronized void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            CerberusRegistry.getInstance().getService(CerberusEvent.class).executeFullEIT(
+                    new NetDisconnectionEvent(valve, e));
+            try {
+                pipeline.close();
+            } catch (IOException e1) {
+                // ignore
+            }
+        }
+    }
+
+    public synchronized long getFrames() {
+        return frames;
+    }
+
+    public synchronized long getBatches() {
+        return batches;
+    }
+
+    public synchronized int getPendingBytes() {
+        return batch == null ? 0 : batch.position();
+    }
+
+    public NetPipeline getPipeline() {
+        return pipeline;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (batch != null)
+                batch.clear();
+        }
+        pipeline.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return pipeline.isClosed();
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        return pipeline.getRemoteAddress();
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return pipeline.getLocalAddress();
+    }
+
+    @Override
+    public ConnectionType getConnectionType() {
+        return pipeline.getConnectionType();
+    }
+}
@@ -25,27 +25,48 @@ package com.cerberustek.valve;
 
 import com.cerberustek.CerberusEvent;
 import com.cerberustek.CerberusRegistry;
-import com.cerberustek.buffer.OverflowBuffer;
+import com.cerberustek.channel.FrameHandler;
 import com.cerberustek.channel.NetChannel;
 import com.cerberustek.channel.NetPipeline;
 import com.cerberustek.channel.NetValve;
 import com.cerberustek.channel.impl.InputChannel;
 import com.cerberustek.channel.impl.OutputChannel;
 import com.cerberustek.events.NetChannelCreationEvent;
+import com.cerberustek.events.NetDataLostEvent;
+import com.cerberustek.events.NetDisconnectionEvent;
+import com.cerberustek.events.NetFileReceptionEvent;
 import com.cerberustek.events.NetReceptionEvent;
+import com.cerberustek.pool.BufferLease;
+import com.cerberustek.pool.SlabPool;
+import com.cerberustek.server.NetServer;
+import com.cerberustek.tcp.TCPPipeline;
 import com.cerberustek.worker.Startable;
 import com.cerberustek.worker.WorkerBoss;
 import com.cerberustek.worker.WorkerPriority;
 import com.cerberustek.worker.WorkerTask;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public abstract class NetValveBase implements NetValve, Startable {
 
-    private final HashMap<Short, InputChannel> inputChannelMap = new HashMap<>();
-    private final HashMap<Short, OutputChannel> outputChannelMap = new HashMap<>();
+    private static final SlabPool FRAME_POOL = new SlabPool(NetServer.DEFAULT_SLAB_MIN,
+            NetServer.DEFAULT_SLAB_MAX, NetServer.DEFAULT_SLAB_POOLSIZE);
+
+    private final ChannelTable<InputChannel> inputChannels = new ChannelTable<>();
+    private final ChannelTable<OutputChannel> outputChannels = new ChannelTable<>();
+    private final ChannelTable<FrameHandler[]> frameHandlers = new ChannelTable<>();
+    private final ConcurrentHashMap<Short, FileSink> fileSinks = new ConcurrentHashMap<>();
     private final NetPipeline pipeline;
+    private final FrameCoalescer coalescer;
     private final int bufferCapacity;
 
     private CerberusEvent eventHandler;
@@ -56,14 +77,32 @@ public abstract class NetValveBase implements NetValve, Startable {
     protected WorkerPriority priority;
     protected String group;
 
-    private int currentPackageLength;
-    private OverflowBuffer buffer;
+    private final ConcurrentLinkedQueue<BufferLease> handoff = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger handoffBytes = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicReference<Runnable> resume = new AtomicReference<>();
+    private volatile int handoffLimit = NetServer.DEFAULT_CHANNEL_HANDOFF;
+    private volatile WorkerBoss channelBoss;
+    private volatile String channelGroup;
+    private volatile WorkerPriority channelPriority;
+    private SlabPool framePool = FRAME_POOL;
+
+    private final AtomicBoolean decoding = new AtomicBoolean(false);
+    private ByteBuffer inbound;
+    private volatile int inboundCapacity;
+    private short bulkChannel;
+    private volatile int bulkRemaining;
+    private boolean bulkLost;
+    private boolean corrupted;
+    private volatile NetValveBase frameTarget;
+    private volatile boolean receptionEvents = false;
 
     public NetValveBase(NetPipeline pipeline, int bufferCapacity) {
         this.pipeline = pipeline;
+        this.coalescer = new FrameCoalescer(pipeline, this);
         this.bufferCapacity = bufferCapacity;
-        this.buffer = new OverflowBuffer(bufferCapacity * 4);
-        this.currentPackageLength = 0;
+        this.inbound = ByteBuffer.allocate(bufferCapacity * 4);
+        this.inboundCapacity = inbound.capacity();
     }
 
     @Override
@@ -87,6 +126,12 @@ public abstract class NetValveBase implements NetValve, Startable {
             boss.decomissionTask(inputTask, group);
         if (outputTask != null)
             boss.decomissionTask(outputTask, group);
+        flushCoalescer();
+        channelBoss = null;
+        BufferLease lease;
+        while ((lease = handoff.poll()) != null)
+            lease.release();
+        handoffBytes.set(0);
 
         try {
             pipeline.close();
@@ -100,8 +145,8 @@ public abstract class NetValveBase implements NetValve, Startable {
         if (outputTask == null && boss != null) {
             outputTask = boss.submitTask((delta) -> {
                 try {
-                    for (NetChannel channel : outputChannelMap.values())
-                        ((OutputChannel) channel).update();
+                    outputChannels.forEach(OutputChannel::update);
+                    flushCoalescer();
                 } finally {
                     outputTask = null;
                 }
@@ -110,103 +155,510 @@ public abstract class NetValveBase implements NetValve, Startable {
     }
 
     @Override
-    public synchronized void updateInputs(byte[] data, int off, int len) {
-        buffer.write(data, off, len);
-//        updateChannels();
+    public void updateInputs(byte[] data, int off, int len) {
+        updateInputs(ByteBuffer.wrap(data, off, len));
+    }
+
+    /**
+     * Hands received bytes to the channels. If a channel dispatch group
+     * is set, the bytes are only copied into a pooled buffer in the
+     * handoff queue and the frames are decoded by a drain task in that
+     * group. The receiving thread never decodes in that case; once the
+     * queue reaches its limit isThrottled() tells it to stop reading
+     * until the callback passed to onResume() runs. Without a dispatch
+     * group the calling thread decodes the bytes itself. Only one thread
+     * may feed a valve at a time, which is what the TCP reactors and the
+     * UDP decode task do.
+     * @param data received bytes
+     */
+    @Override
+    public void updateInputs(ByteBuffer data) {
+        if (!data.hasRemaining())
+            return;
+
+        if (channelBoss != null) {
+            BufferLease lease = framePool.lease(data.remaining());
+            lease.buffer().put(data).flip();
+            handOff(lease);
+            return;
+        }
+        decodeInline(data);
+    }
+
+    /**
+     * Same as updateInputs(ByteBuffer), but queues the lease itself
+     * instead of a copy of its bytes. The valve retains the lease for as
+     * long as it needs it, the caller still has to release its own
+     * reference once this returns.
+     * @param lease lease whose buffer holds the received bytes
+     */
+    public void updateInputs(BufferLease lease) {
+        ByteBuffer data = lease.buffer();
+        if (!data.hasRemaining())
+            return;
+
+        if (channelBoss != null) {
+            handOff(lease.retain());
+            return;
+        }
+        decodeInline(data);
+    }
+
+    /**
+     * @return if the reader should pause until the drain task caught up
+     */
+    public boolean isThrottled() {
+        return channelBoss != null && handoffBytes.get() >= handoffLimit;
+    }
+
+    /**
+     * Registers a callback which runs once the handoff queue drained to
+     * half of its limit. Runs it right away if that's already the case.
+     * @param resume callback that resumes reading from the peer
+     */
+    public void onResume(Runnable resume) {
+        this.resume.set(resume);
+        if (channelBoss == null || handoffBytes.get() <= handoffLimit / 2)
+            resume();
+    }
+
+    private void resume() {
+        Runnable callback = resume.getAndSet(null);
+        if (callback != null)
+            callback.run();
+    }
+
+    private void handOff(BufferLease lease) {
+        handoffBytes.addAndGet(lease.buffer().remaining());
+        handoff.add(lease);
+        scheduleDrain();
+    }
+
+    private void decodeInline(ByteBuffer data) {
+        if (!decoding.compareAndSet(false, true)) {
+            // A drain task left over from a disabled dispatch group still
+            // decodes, queue behind it to keep the order.
+            BufferLease lease = framePool.lease(data.remaining());
+            lease.buffer().put(data).flip();
+            handoffBytes.addAndGet(lease.buffer().remaining());
+            handoff.add(lease);
+            return;
+        }
+
+        try {
+            BufferLease lease;
+            while ((lease = handoff.poll()) != null)
+                feed(lease);
+            feed(data);
+        } finally {
+            releaseDecoder();
+        }
+    }
+
+    /**
+     * Decodes the next batch of handed off bytes, or the bytes left in
+     * the inbound buffer if nothing is queued. Does nothing if another
+     * thread is currently decoding this valve.
+     */
+    @Override
+    public void updateChannels() {
+        decodeBatch();
+    }
+
+    private boolean decodeBatch() {
+        if (!decoding.compareAndSet(false, true))
+            return false;
+
+        try {
+            BufferLease lease = handoff.poll();
+            if (lease == null) {
+                inbound.flip();
+                decode(inbound);
+                inbound.compact();
+                return true;
+            }
+
+            int batch = NetServer.DEFAULT_CHANNEL_BATCH;
+            do {
+                feed(lease);
+            } while (--batch > 0 && (lease = handoff.poll()) != null);
+        } finally {
+            decoding.set(false);
+        }
+
+        if (handoffBytes.get() <= handoffLimit / 2)
+            resume();
+        return true;
+    }
+
+    private void releaseDecoder() {
+        decoding.set(false);
+        if (!handoff.isEmpty())
+            scheduleDrain();
+    }
+
+    /**
+     * Moves frame decoding off the I/O thread. Received bytes are queued
+     * and decoded in batches by a single drain task in the given worker
+     * group, which keeps the frames of this valve in order.
+     * @param boss worker boss to submit the drain task to, or null to
+     *             decode on the receiving thread again
+     * @param group worker group of the drain task
+     * @param priority priority of the drain task
+     */
+    public void setChannelDispatch(WorkerBoss boss, String group, WorkerPriority priority) {
+        this.channelGroup = group;
+        this.channelPriority = priority;
+        this.channelBoss = boss;
+        if (boss == null)
+            resume();
+        else
+            scheduleDrain();
+    }
+
+    public String getChannelGroup() {
+        return channelBoss != null ? channelGroup : null;
+    }
+
+    public void setHandoffLimit(int handoffLimit) {
+        this.handoffLimit = handoffLimit;
+    }
+
+    public int getHandoffLimit() {
+        return handoffLimit;
+    }
+
+    public int getHandoffBytes() {
+        return handoffBytes.get();
+    }
+
+    public void setFramePool(SlabPool framePool) {
+        this.framePool = framePool != null ? framePool : FRAME_POOL;
+    }
+
+    public SlabPool getFramePool() {
+        return framePool;
+    }
+
+    private void scheduleDrain() {
+        WorkerBoss boss = channelBoss;
+        if (boss != null && !handoff.isEmpty() && draining.compareAndSet(false, true))
+            channelTask = boss.submitTask(delta -> drain(), channelPriority, channelGroup);
+    }
+
+    private void drain() {
+        boolean decoded;
+        try {
+            decoded = decodeBatch();
+        } finally {
+            channelTask = null;
+            draining.set(false);
+        }
+
+        // If another thread holds the decoder it schedules the next drain
+        // once it lets go, so don't spin by resubmitting right away.
+        if (decoded || !decoding.get())
+            scheduleDrain();
+    }
+
+    private void feed(BufferLease lease) {
+        try {
+            handoffBytes.addAndGet(-lease.buffer().remaining());
+            feed(lease.buffer());
+        } finally {
+            lease.release();
+        }
+    }
+
+    private void feed(ByteBuffer data) {
+        if (inbound.position() == 0 && data.hasArray())
+            decode(data);
+
+        while (data.hasRemaining() && !corrupted) {
+            stash(data);
+            inbound.flip();
+            decode(inbound);
+            inbound.compact();
+        }
+        if (corrupted)
+            data.position(data.limit());
+    }
+
+    private void stash(ByteBuffer data) {
+        if (!inbound.hasRemaining()) {
+            // A single frame never exceeds MAX_FRAME_SIZE, so a full
+            // buffer of that size means the stream can't be decoded.
+            int limit = NetServer.MAX_FRAME_SIZE + 4;
+            if (inbound.capacity() >= limit) {
+                protocolError("Frame exceeds " + NetServer.MAX_FRAME_SIZE + " bytes");
+                return;
+            }
+
+            ByteBuffer grown = ByteBuffer.allocate(Math.min(inbound.capacity() * 2, limit));
+            inbound.flip();
+            grown.put(inbound);
+            inbound = grown;
+            inboundCapacity = grown.capacity();
+        }
+
+        int count = Math.min(data.remaining(), inbound.remaining());
+        ByteBuffer chunk = data.duplicate();
+        chunk.limit(chunk.position() + count);
+        inbound.put(chunk);
+        data.position(data.position() + count);
+    }
+
+    private void decode(ByteBuffer src) {
+        NetValveBase target = frameTarget;
+        if (target == null)
+            target = this;
+
+        byte[] array = src.array();
+        while (!corrupted) {
+            if (bulkRemaining > 0) {
+                drainBulk(src);
+                if (bulkRemaining > 0)
+                    return;
+            }
+
+            int pos = src.position();
+            if (src.remaining() < 4)
+                return;
+
+            int length = src.getInt(pos);
+            if (length == TCPPipeline.BULK_FRAME) {
+                if (src.remaining() < TCPPipeline.BULK_HEADER)
+                    return;
+
+                bulkChannel = src.getShort(pos + 4);
+                bulkRemaining = src.getInt(pos + 6);
+                bulkLost = false;
+                src.position(pos + TCPPipeline.BULK_HEADER);
+                continue;
+            }
+
+            if (length < 2 || length > NetServer.MAX_FRAME_SIZE) {
+                protocolError("Invalid frame length " + length);
+                src.position(src.limit());
+                return;
+            }
+            if (src.remaining() - 4 < length)
+                return;
+
+            target.processFrame(array, src.arrayOffset() + pos + 4, length);
+            src.position(pos + 4 + length);
+        }
+    }
 
-        //noinspection StatementWithEmptyBody
-        while (updateInputs());
+    /**
+     * The byte stream lost its framing. Everything after this point would
+     * be decoded at the wrong offsets, so the connection is dropped.
+     */
+    private void protocolError(String message) {
+        corrupted = true;
+        inbound.clear();
+        getEventHandler().executeFullEIT(new NetDisconnectionEvent(this, new IOException(message)));
+        try {
+            pipeline.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
 
-        /*short channelId = (short) (((data[off] & 0xFF) << 8) + (data[off + 1] & 0xFF));
+    protected void processFrame(byte[] data, int offset, int length) {
+        short channelId = (short) (((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF));
 
         InputChannel channel = findInputChannel(channelId);
         if (channel == null)
             channel = (InputChannel) openChannel(channelId);
 
-        channel.process(data, off + 2, len - 2);
-        getEventHandler().executeArithmetic(new NetReceptionEvent(this, channel));*/
+        channel.process(data, offset + 2, length - 2);
+
+        FrameHandler[] handlers = frameHandlers.get(channelId);
+        if (handlers != null) {
+            for (FrameHandler handler : handlers)
+                handler.onFrame(this, channel);
+        }
+        if (receptionEvents)
+            getEventHandler().executeArithmetic(new NetReceptionEvent(this, channel));
     }
 
     @Override
-    public synchronized void updateChannels() {
-        if (channelTask == null && boss != null) {
-            channelTask = boss.submitTask(delta -> {
-                try {
-                    //noinspection StatementWithEmptyBody
-                    while (updateInputs()) ;
-                } finally {
-                    channelTask = null;
-                }
-            }, priority, "channel_update");
+    public void onFrame(short channelId, FrameHandler handler) {
+        synchronized (frameHandlers) {
+            FrameHandler[] handlers = frameHandlers.get(channelId);
+            if (handlers == null) {
+                handlers = new FrameHandler[] {handler};
+            } else {
+                handlers = Arrays.copyOf(handlers, handlers.length + 1);
+                handlers[handlers.length - 1] = handler;
+            }
+            frameHandlers.put(channelId, handlers);
         }
     }
 
-    private boolean updateInputs() {
-        if (currentPackageLength == 0) {
-            if (buffer.remaining() > 4) {
-                int c1 = buffer.read();
-                int c2 = buffer.read();
-                int c3 = buffer.read();
-                int c4 = buffer.read();
-
-                currentPackageLength = c1 << 24 | ((c2 & 0xFF) << 16) | ((c3 & 0xFF) << 8) | (c4 & 0xFF);
-            } else {
-                return false;
+    @Override
+    public void removeFrameHandler(short channelId, FrameHandler handler) {
+        synchronized (frameHandlers) {
+            FrameHandler[] handlers = frameHandlers.get(channelId);
+            if (handlers == null)
+                return;
+
+            for (int i = 0; i < handlers.length; i++) {
+                if (handlers[i] != handler)
+                    continue;
+
+                FrameHandler[] remaining = new FrameHandler[handlers.length - 1];
+                System.arraycopy(handlers, 0, remaining, 0, i);
+                System.arraycopy(handlers, i + 1, remaining, i, remaining.length - i);
+                frameHandlers.put(channelId, remaining.length > 0 ? remaining : null);
+                return;
             }
         }
+    }
 
-        if (buffer.remaining() >= currentPackageLength) {
-            byte[] data = new byte[currentPackageLength];
-            buffer.read(data);
+    /**
+     * Will additionally publish a NetReceptionEvent on the global event
+     * bus for every decoded frame. Meant for diagnostics, regular
+     * consumers should subscribe with onFrame().
+     * @param receptionEvents if reception events should be fired
+     */
+    public void setReceptionEvents(boolean receptionEvents) {
+        this.receptionEvents = receptionEvents;
+    }
 
-            short channelId = (short) (((data[0] & 0xFF) << 8) | (data[1] & 0xFF));
+    public boolean isReceptionEvents() {
+        return receptionEvents;
+    }
 
-            InputChannel channel = findInputChannel(channelId);
-            if (channel == null)
-                channel = (InputChannel) openChannel(channelId);
+    /**
+     * Will hand every decoded frame to the given valve instead of this
+     * one's input channels. Used by valves that merge several transports.
+     * @param target valve to process the frames, or null to process them here
+     */
+    public void setFrameTarget(NetValveBase target) {
+        this.frameTarget = target;
+    }
 
-            channel.process(data, 2, currentPackageLength - 2);
+    public NetValveBase getFrameTarget() {
+        return frameTarget;
+    }
 
+    private void drainBulk(ByteBuffer src) {
+        while (bulkRemaining > 0 && src.hasRemaining()) {
+            int len = Math.min(bulkRemaining, src.remaining());
+            bulkRemaining -= len;
 
+            FileSink sink = fileSinks.get(bulkChannel);
+            int accepted = sink != null ? (int) Math.min(len, sink.remaining) : 0;
+            if (accepted > 0) {
+                try {
+                    ByteBuffer chunk = src.duplicate();
+                    chunk.limit(chunk.position() + accepted);
+                    while (chunk.hasRemaining())
+                        sink.advance(sink.target.write(chunk, sink.position));
+                    completeSink(sink);
+                } catch (IOException e) {
+                    fileSinks.remove(bulkChannel, sink);
+                    accepted = 0;
+                }
+            }
 
-//            if (channelId == 3)
-//                CerberusRegistry.getInstance().debug("NetReceptionEvent for channel " + channelId);
-            getEventHandler().executeArithmetic(new NetReceptionEvent(this, channel));
-            currentPackageLength = 0;
-            return true;
-        } else {
+            src.position(src.position() + len);
+            if (accepted < len)
+                bulkDataLost();
+        }
+    }
+
+    /**
+     * Writes the body of a pending file transfer straight from the socket
+     * into its target file. Called by the reading thread before every
+     * read, so it never waits for the decoder: if no transfer is pending
+     * or the drain task is decoding, the bytes take the regular path.
+     * Nothing transferred counts as not handled, so the regular read can
+     * tell a closed socket apart.
+     * @param src socket channel to read from
+     * @return if the read was handled
+     * @throws IOException if reading or writing the file failed
+     */
+    public boolean transferFrom(ReadableByteChannel src) throws IOException {
+        if (bulkRemaining <= 0 || !decoding.compareAndSet(false, true))
             return false;
+
+        try {
+            if (bulkRemaining <= 0 || inbound.position() > 0 || !handoff.isEmpty())
+                return false;
+
+            FileSink sink = fileSinks.get(bulkChannel);
+            if (sink == null || sink.remaining == 0)
+                return false;
+
+            long count = sink.target.transferFrom(src, sink.position, Math.min(bulkRemaining, sink.remaining));
+            bulkRemaining -= (int) count;
+            sink.advance(count);
+            completeSink(sink);
+            return count > 0;
+        } finally {
+            releaseDecoder();
+        }
+    }
+
+    private void completeSink(FileSink sink) {
+        if (sink.remaining == 0 && fileSinks.remove(bulkChannel, sink))
+            getEventHandler().executeFullEIT(new NetFileReceptionEvent(this, bulkChannel, sink.target,
+                    sink.length));
+    }
+
+    private void bulkDataLost() {
+        if (!bulkLost) {
+            bulkLost = true;
+            getEventHandler().executeFullEIT(new NetDataLostEvent(this, bulkChannel));
         }
     }
 
+    @Override
+    public void sendFile(short channelId, FileChannel file, long position, long length) throws IOException {
+        if (!(pipeline instanceof TCPPipeline))
+            throw new IOException("File transfers require a TCP pipeline");
+
+        OutputChannel channel = findOutputChannel(channelId);
+        if (channel != null)
+            channel.flush();
+        coalescer.flush();
+
+        ((TCPPipeline) pipeline).transferFile(channelId, file, position, length);
+    }
+
+    @Override
+    public void receiveFile(short channelId, FileChannel target, long position, long length) {
+        fileSinks.put(channelId, new FileSink(target, position, length));
+    }
+
     @Override
     public short nextChannel() {
-        short id = 0;
-        while (inputChannelMap.containsKey(id))
-            id++;
-        return id;
+        return inputChannels.nextFree();
     }
 
     @Override
     public InputChannel findInputChannel(short channelId) {
-        return inputChannelMap.get(channelId);
+        return inputChannels.get(channelId);
     }
 
     @Override
     public OutputChannel findOutputChannel(short channelId) {
-        return outputChannelMap.get(channelId);
+        return outputChannels.get(channelId);
     }
 
     @Override
-    public NetChannel openChannel(short channelId) {
-        InputChannel inputChannel = inputChannelMap.get(channelId);
+    public synchronized NetChannel openChannel(short channelId) {
+        InputChannel inputChannel = inputChannels.get(channelId);
         if (inputChannel == null && getEventHandler().executeShortEIF(
                 new NetChannelCreationEvent(this, channelId))) {
 
             inputChannel = new InputChannel(channelId, bufferCapacity);
-            OutputChannel outputChannel = new OutputChannel(channelId, bufferCapacity, pipeline, this);
-            inputChannelMap.put(channelId, inputChannel);
-            outputChannelMap.put(channelId, outputChannel);
+            OutputChannel outputChannel = new OutputChannel(channelId, bufferCapacity, coalescer, this);
+            outputChannels.put(channelId, outputChannel);
+            inputChannels.put(channelId, inputChannel);
             return inputChannel;
         }
         return inputChannel;
@@ -218,9 +670,9 @@ public abstract class NetValveBase implements NetValve, Startable {
     }
 
     @Override
-    public NetChannel closeChannel(short channelId) {
-        outputChannelMap.remove(channelId);
-        return inputChannelMap.remove(channelId);
+    public synchronized NetChannel closeChannel(short channelId) {
+        outputChannels.remove(channelId);
+        return inputChannels.remove(channelId);
     }
 
     @Override
@@ -228,15 +680,71 @@ public abstract class NetValveBase implements NetValve, Startable {
         return pipeline;
     }
 
+    public void setCoalescing(double maxDelay, int byteBudget) {
+        coalescer.enable(maxDelay, byteBudget);
+    }
+
+    public void disableCoalescing() {
+        coalescer.disable();
+    }
+
+    public FrameCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    private void flushCoalescer() {
+        if (pipeline.isClosed())
+            return;
+
+        try {
+            coalescer.flush();
+        } catch (IOException e) {
+            getEventHandler().executeFullEIT(new NetDisconnectionEvent(this, e));
+            try {
+                pipeline.close();
+            } catch (IOException e1) {
+                // ignore
+            }
+        }
+    }
+
     @Override
     public int getNetworkBufferSize() {
         return bufferCapacity;
     }
 
+    /**
+     * Estimates the heap held by this valve: the decoder buffer, handed
+     * off bytes and the buffers of every open channel.
+     * @return footprint in bytes
+     */
+    public long getMemoryFootprint() {
+        return inboundCapacity + handoffBytes.get() + 2L * bufferCapacity * inputChannels.size();
+    }
+
     private CerberusEvent getEventHandler() {
         if (eventHandler == null)
             eventHandler = CerberusRegistry.getInstance().getService(CerberusEvent.class);
         return eventHandler;
     }
-}
 
+    private static class FileSink {
+
+        private final FileChannel target;
+        private final long length;
+        private long position;
+        private long remaining;
+
+        private FileSink(FileChannel target, long position, long length) {
+            this.target = target;
+            this.length = length;
+            this.position = position;
+            this.remaining = length;
+        }
+
+        private void advance(long count) {
+            position += count;
+            remaining -= count;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.worker;
+
+public interface TimerWheel {
+
+    /**
+     * Will schedule a task to run once after the delay has
+     * passed. Tasks are run by the thread calling advance().
+     * @param task task to run
+     * @param delay delay in milliseconds
+     * @return handle to cancel the task
+     */
+    Timeout schedule(Runnable task, long delay);
+
+    /**
+     * Will run all tasks that have expired up until now.
+     * @return amount of tasks run
+     */
+    int advance();
+
+    /**
+     * Returns the amount of milliseconds until the next tick
+     * that might expire a task, or 0 if no task is scheduled.
+     * The result can be passed to Selector.select(long).
+     * @return next delay
+     */
+    long nextDelay();
+
+    int size();
+
+    void clear();
+
+    interface Timeout {
+
+        boolean cancel();
+
+        boolean isCancelled();
+        boolean isExpired();
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.worker.impl;
+
+import com.cerberustek.worker.TimerWheel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+public class HashedTimerWheel implements TimerWheel {
+
+    private final List<LinkedList<TimeoutImpl>> wheel;
+    private final long tickDuration;
+    private final long startTime;
+    private final int mask;
+
+    private long currentTick = 0;
+    private int size = 0;
+
+    public HashedTimerWheel(long tickDuration, int ticksPerWheel) {
+        int wheelSize = 1;
+        while (wheelSize < ticksPerWheel)
+            wheelSize <<= 1;
+
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++)
+            wheel.add(new LinkedList<>());
+
+        this.tickDuration = Math.max(1, tickDuration);
+        this.mask = wheelSize - 1;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized Timeout schedule(Runnable task, long delay) {
+        long deadline = System.currentTimeMillis() - startTime + Math.max(0, delay);
+        long tick = Math.max(currentTick, (deadline + tickDuration - 1) / tickDuration);
+
+        LinkedList<TimeoutImpl> bucket = wheel.get((int) (tick & mask));
+        TimeoutImpl timeout = new TimeoutImpl(task, (tick - currentTick) / wheel.size(), bucket);
+        bucket.add(timeout);
+        size++;
+        return timeout;
+    }
+
+    @Override
+    public int advance() {
+        ArrayList<TimeoutImpl> expired = null;
+
+        synchronized (this) {
+            long now = System.currentTimeMillis() - startTime;
+            if (size == 0) {
+                currentTick = Math.max(currentTick, now / tickDuration + 1);
+                return 0;
+            }
+
+            while (currentTick * tickDuration <= now) {
+                Iterator<TimeoutImpl> tr = wheel.get((int) (currentTick & mask)).iterator();
+                while (tr.hasNext()) {
+                    TimeoutImpl timeout = tr.next();
+
+                    if (timeout.rounds <= 0) {
+                        tr.remove();
+                        size--;
+                        timeout.expired = true;
+
+                        if (expired == null)
+                            expired = new ArrayList<>();
+                        expired.add(timeout);
+                    } else
+                        timeout.rounds--;
+                }
+                currentTick++;
+            }
+        }
+
+        if (expired == null)
+            return 0;
+
+        for (TimeoutImpl timeout : expired)
+            timeout.task.run();
+        return expired.size();
+    }
+
+    @Override
+    public synchronized long nextDelay() {
+        if (size == 0)
+            return 0;
+        return Math.max(1, currentTick * tickDuration - (System.currentTimeMillis() - startTime));
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (LinkedList<TimeoutImpl> bucket : wheel) {
+            bucket.forEach(timeout -> timeout.cancelled = true);
+            bucket.clear();
+        }
+        size = 0;
+    }
+
+    private class TimeoutImpl implements Timeout {
+
+        private final Runnable task;
+        private final LinkedList<TimeoutImpl> bucket;
+
+        private long rounds;
+        private volatile boolean cancelled = false;
+        private volatile boolean expired = false;
+
+        private TimeoutImpl(Runnable task, long rounds, LinkedList<TimeoutImpl> bucket) {
+            this.task = task;
+            this.rounds = rounds;
+            this.bucket = bucket;
+        }
+
+        /**
+         * Removes the timeout from its bucket right away, so cancelled
+         * timeouts neither count towards size() nor keep nextDelay()
+         * waking the selector every tick.
+         */
+        @Override
+        public boolean cancel() {
+            synchronized (HashedTimerWheel.this) {
+                if (expired)
+                    return false;
+                if (!cancelled) {
+                    cancelled = true;
+                    bucket.remove(this);
+                    size--;
+                }
+                return true;
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return expired;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.server.impl;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UDPCookieJarTest {
+
+    private static final int LENGTH = 16;
+    private static final long LIFETIME = 10000;
+    private static final long NOW = 1_000_000;
+
+    private final UDPCookieJar jar = new UDPCookieJar(LENGTH, LIFETIME);
+    private final InetSocketAddress peer = new InetSocketAddress("127.0.0.1", 4000);
+
+    private ByteBuffer bake(long now) {
+        ByteBuffer cookie = ByteBuffer.allocate(LENGTH);
+        jar.bake(peer, cookie, now);
+        cookie.flip();
+        return cookie;
+    }
+
+    @Test
+    public void acceptsFreshCookie() {
+        assertTrue(jar.verify(peer, bake(NOW), NOW));
+    }
+
+    @Test
+    public void acceptsCookieFromPreviousSlot() {
+        assertTrue(jar.verify(peer, bake(NOW), NOW + LIFETIME));
+    }
+
+    @Test
+    public void rejectsExpiredCookie() {
+        assertFalse(jar.verify(peer, bake(NOW), NOW + 2 * LIFETIME));
+    }
+
+    @Test
+    public void rejectsCookieFromTheFuture() {
+        assertFalse(jar.verify(peer, bake(NOW + LIFETIME), NOW));
+    }
+
+    @Test
+    public void rejectsOtherAddress() {
+        assertFalse(jar.verify(new InetSocketAddress("127.0.0.2", 4000), bake(NOW), NOW));
+        assertFalse(jar.verify(new InetSocketAddress("127.0.0.1", 4001), bake(NOW), NOW));
+    }
+
+    @Test
+    public void rejectsTamperedCookie() {
+        ByteBuffer cookie = bake(NOW);
+        cookie.put(0, (byte) (cookie.get(0) ^ 1));
+        assertFalse(jar.verify(peer, cookie, NOW));
+    }
+
+    @Test
+    public void rejectsShortCookie() {
+        ByteBuffer cookie = bake(NOW);
+        cookie.limit(LENGTH - 1);
+        assertFalse(jar.verify(peer, cookie, NOW));
+    }
+
+    @Test
+    public void rejectsCookieOfOtherJar() {
+        UDPCookieJar other = new UDPCookieJar(LENGTH, LIFETIME);
+        assertFalse(other.verify(peer, bake(NOW), NOW));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Cerberus-Net is a simple network library based on the java socket
+ * framework. It also includes a powerful scheduling solution.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.server.impl;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class UDPPeerListTest {
+
+    private final UDPPeerList list = new UDPPeerList();
+
+    private static UDPPeer peer(int port, long footprint) {
+        return new UDPPeer(null, new InetSocketAddress("127.0.0.1", port), footprint, 0);
+    }
+
+    @Test
+    public void evictsInAdmissionOrder() {
+        UDPPeer a = peer(1, 100);
+        UDPPeer b = peer(2, 100);
+        UDPPeer c = peer(3, 100);
+        list.add(a, 0);
+        list.add(b, 0);
+        list.add(c, 0);
+
+        assertSame(a, list.eldest());
+        list.remove(a);
+        assertSame(b, list.eldest());
+        list.remove(b);
+        assertSame(c, list.eldest());
+        list.remove(c);
+        assertNull(list.eldest());
+    }
+
+    @Test
+    public void touchMovesPeerToYoungEnd() {
+        UDPPeer a = peer(1, 100);
+        UDPPeer b = peer(2, 100);
+        UDPPeer c = peer(3, 100);
+        list.add(a, 0);
+        list.add(b, 0);
+        list.add(c, 0);
+
+        list.touch(a, 10);
+        assertSame(b, list.eldest());
+        list.touch(b, 20);
+        assertSame(c, list.eldest());
+
+        list.remove(c);
+        assertSame(a, list.eldest());
+    }
+
+    @Test
+    public void tracksMemoryOnAddAndRemove() {
+        UDPPeer a = peer(1, 100);
+        UDPPeer b = peer(2, 250);
+        list.add(a, 0);
+        list.add(b, 0);
+        assertEquals(2, list.size());
+        assertEquals(350, list.getMemory());
+
+        assertTrue(list.remove(a));
+        assertEquals(250, list.getMemory());
+        assertFalse(list.remove(a));
+        assertEquals(250, list.getMemory());
+
+        list.clear();
+        assertEquals(0, list.size());
+        assertEquals(0, list.getMemory());
+    }
+
+    @Test
+    public void ignoresRemovedPeers() {
+        UDPPeer a = peer(1, 100);
+        list.add(a, 0);
+        list.remove(a);
+        list.touch(a, 10);
+
+        assertNull(list.eldest());
+        assertEquals(0, list.getMemory());
+    }
+}